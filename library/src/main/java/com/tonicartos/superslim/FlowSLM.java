@@ -0,0 +1,481 @@
+package com.tonicartos.superslim;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Lays out section content in lines, left to right (or right to left), wrapping to a new line when
+ * the next item does not fit the content width. Items keep their measured width and are aligned
+ * to the top of their line.
+ *
+ * <p>Line breaks are cached per section, so filling towards the start only measures the line
+ * being laid out rather than the whole section up to the anchor. Lines from a changed position
+ * on are dropped when the adapter's items change, and a section's lines are all dropped when the
+ * content width changes.</p>
+ */
+public class FlowSLM extends SectionLayoutManager {
+
+    public static int ID = LayoutManager.SECTION_MANAGER_FLOW;
+
+    /**
+     * Line breaks keyed by section first position.
+     */
+    private final SparseArray<Lines> mLines = new SparseArray<>();
+
+    /**
+     * Views of the line being laid out, reused from line to line.
+     */
+    private LayoutState.View[] mLineViews = new LayoutState.View[16];
+
+    public FlowSLM(LayoutManager layoutManager) {
+        super(layoutManager);
+    }
+
+    @Override
+    public int computeHeaderOffset(int firstVisiblePosition, SectionData sd, LayoutState state) {
+        /*
+         * Work from an assumed overlap and add line heights from the start until the overlap is
+         * zero or less, or the line holding the current position is reached.
+         */
+        final Lines lines = getLines(sd);
+
+        int areaAbove = 0;
+        for (int line = 0; areaAbove < sd.headerHeight; line++) {
+            if (!ensureLine(lines, line, sd, state) || lines.starts[line] >= firstVisiblePosition) {
+                break;
+            }
+            areaAbove += lines.heights[line];
+        }
+
+        if (areaAbove == sd.headerHeight) {
+            return 0;
+        } else if (areaAbove > sd.headerHeight) {
+            return 1;
+        } else {
+            return -areaAbove;
+        }
+    }
+
+    @Override
+    public int fillToEnd(int leadingEdge, int markerLine, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        if (markerLine >= leadingEdge) {
+            return markerLine;
+        }
+
+        final int itemCount = state.getRecyclerState().getItemCount();
+        if (anchorPosition >= itemCount) {
+            return markerLine;
+        }
+
+        final Lines lines = getLines(sd);
+        int line = findLine(lines, anchorPosition, sd, state);
+        if (line == -1) {
+            return markerLine;
+        }
+
+        // Lay out from the start of the anchor's line. Detach and scrap any items in the line
+        // before the anchor so the whole line is laid out again.
+        for (int position = lines.starts[line]; position < anchorPosition; position++) {
+            View child = mLayoutManager.findViewByPosition(position);
+            if (child != null) {
+                markerLine = mLayoutManager.getDecoratedTop(child);
+                mLayoutManager.detachAndScrapView(child, state.recycler);
+            }
+        }
+
+        while (markerLine < leadingEdge && ensureLine(lines, line, sd, state)) {
+            markerLine = layoutLine(lines, line, markerLine, LayoutManager.Direction.END, sd,
+                    state);
+            line += 1;
+        }
+
+        return markerLine;
+    }
+
+    @Override
+    public int fillToStart(int leadingEdge, int markerLine, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        final Lines lines = getLines(sd);
+        int line = anchorPosition < lines.firstContentPosition ? -1 :
+                findLine(lines, anchorPosition, sd, state);
+
+        if (line != -1) {
+            // Lay out the whole of the anchor's line. Detach and scrap any items in the line after
+            // the anchor, and move the marker line to the bottom of the line.
+            final int lineEnd = lines.getEnd(line);
+            for (int position = anchorPosition + 1; position < lineEnd; position++) {
+                View child = mLayoutManager.findViewByPosition(position);
+                if (child != null) {
+                    markerLine = mLayoutManager.getDecoratedTop(child) + lines.heights[line];
+                    mLayoutManager.detachAndScrapView(child, state.recycler);
+                }
+            }
+        }
+
+        // Check to see if we have to adjust for minimum section height. We don't if there is an
+        // attached view in this section.
+        View check = mLayoutManager.getChildAt(0);
+        boolean applyMinHeight = check != null && ((LayoutManager.LayoutParams) check
+                .getLayoutParams()).getTestedFirstPosition() != sd.firstPosition;
+
+        // Line heights are known from the cache, so the section height is found without measuring.
+        int minHeightOffset = 0;
+        if (applyMinHeight) {
+            int sectionHeight = 0;
+            for (int i = line; i >= 0 && sectionHeight < sd.minimumHeight; i--) {
+                sectionHeight += lines.heights[i];
+            }
+
+            if (sectionHeight < sd.minimumHeight) {
+                minHeightOffset = sectionHeight - sd.minimumHeight;
+                markerLine += minHeightOffset;
+            }
+        }
+
+        for (; line >= 0; line--) {
+            if (markerLine - minHeightOffset <= leadingEdge) {
+                break;
+            }
+            markerLine = layoutLine(lines, line, markerLine, LayoutManager.Direction.START, sd,
+                    state);
+        }
+
+        return markerLine;
+    }
+
+    @Override
+    public int finishFillToEnd(int leadingEdge, View anchor, SectionData sd, LayoutState state) {
+        final int anchorPosition = mLayoutManager.getPosition(anchor);
+        final int markerLine = getLowestEdge(sd.firstPosition, mLayoutManager.getChildCount() - 1,
+                mLayoutManager.getDecoratedBottom(anchor));
+
+        return fillToEnd(leadingEdge, markerLine, anchorPosition + 1, sd, state);
+    }
+
+    @Override
+    public int finishFillToStart(int leadingEdge, View anchor, SectionData sd, LayoutState state) {
+        final int anchorPosition = mLayoutManager.getPosition(anchor);
+        final int markerLine = mLayoutManager.getDecoratedTop(anchor);
+
+        return fillToStart(leadingEdge, markerLine, anchorPosition - 1, sd, state);
+    }
+
+    @Override
+    public int getLowestEdge(int sectionFirstPosition, int lastIndex, int defaultEdge) {
+        // Items in a line share a top edge, so the lowest edge is the bottom of the tallest item
+        // in the last line.
+        boolean found = false;
+        int lineTop = 0;
+        int bottom = defaultEdge;
+        for (int i = lastIndex; i >= 0; i--) {
+            View child = mLayoutManager.getChildAt(i);
+            LayoutManager.LayoutParams params = (LayoutManager.LayoutParams) child
+                    .getLayoutParams();
+            if (params.getTestedFirstPosition() != sectionFirstPosition) {
+                break;
+            }
+
+            if (params.isHeader) {
+                continue;
+            }
+
+            final int top = mLayoutManager.getDecoratedTop(child);
+            if (!found) {
+                found = true;
+                lineTop = top;
+                bottom = mLayoutManager.getDecoratedBottom(child);
+            } else if (top != lineTop) {
+                break;
+            } else {
+                bottom = Math.max(bottom, mLayoutManager.getDecoratedBottom(child));
+            }
+        }
+
+        return bottom;
+    }
+
+    @Override
+    public void onItemsChanged() {
+        mLines.clear();
+    }
+
+    @Override
+    public void onItemsChanged(int positionStart, int positionEnd) {
+        // Sections starting in the range may have moved. Sections starting before it keep the
+        // lines that end before it, as the items after them may now wrap differently.
+        for (int i = mLines.size() - 1; i >= 0; i--) {
+            final int sfp = mLines.keyAt(i);
+            if (sfp >= positionEnd) {
+                continue;
+            }
+            if (sfp >= positionStart) {
+                mLines.removeAt(i);
+            } else {
+                mLines.valueAt(i).truncate(positionStart);
+            }
+        }
+    }
+
+    /**
+     * Measure the next line of the section and add it to the cache.
+     *
+     * @return False if the section has no more lines.
+     */
+    private boolean computeNextLine(Lines lines, SectionData sd, LayoutState state) {
+        if (lines.complete) {
+            return false;
+        }
+
+        final int itemCount = state.getRecyclerState().getItemCount();
+        final int start = lines.end;
+        int position = start;
+        int width = 0;
+        int height = 0;
+        boolean sectionEnded = true;
+        while (position < itemCount) {
+            View child = getMeasuredView(position, sd, state);
+            if (child == null) {
+                break;
+            }
+
+            final int childWidth = mLayoutManager.getDecoratedMeasuredWidth(child);
+            if (position > start && width + childWidth > lines.width) {
+                sectionEnded = false;
+                break;
+            }
+            width += childWidth;
+            height = Math.max(height, mLayoutManager.getDecoratedMeasuredHeight(child));
+            position += 1;
+        }
+
+        if (position > start) {
+            if (lines.measuredState != state) {
+                lines.measuredState = state;
+                lines.firstMeasuredLine = lines.count;
+            }
+            lines.add(start, height, position);
+        }
+        lines.complete = sectionEnded;
+        return position > start;
+    }
+
+    /**
+     * Make sure a line is in the cache, measuring lines up to it as needed.
+     *
+     * @return False if the section does not have the line.
+     */
+    private boolean ensureLine(Lines lines, int line, SectionData sd, LayoutState state) {
+        while (lines.count <= line) {
+            if (!computeNextLine(lines, sd, state)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the line holding a position, measuring lines up to it as needed.
+     *
+     * @return Line index, or -1 if the position is not in the section's content.
+     */
+    private int findLine(Lines lines, int position, SectionData sd, LayoutState state) {
+        if (position < lines.firstContentPosition) {
+            return -1;
+        }
+
+        while (position >= lines.end) {
+            if (!computeNextLine(lines, sd, state)) {
+                return -1;
+            }
+        }
+
+        final int index = Arrays.binarySearch(lines.starts, 0, lines.count, position);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private Lines getLines(SectionData sd) {
+        final int width = mLayoutManager.getWidth() - sd.contentStart - sd.contentEnd;
+        Lines lines = mLines.get(sd.firstPosition);
+        if (lines == null) {
+            lines = new Lines();
+            mLines.put(sd.firstPosition, lines);
+        }
+
+        if (lines.width != width) {
+            lines.reset(width, sd.hasHeader ? sd.firstPosition + 1 : sd.firstPosition);
+        }
+        return lines;
+    }
+
+    /**
+     * Get a measured view for a position. Attached views are used as they are, so measuring a
+     * line next to attached content does not bind a second view for the same position.
+     *
+     * @return Measured view, or null if the position is not section content.
+     */
+    private View getMeasuredView(int position, SectionData sd, LayoutState state) {
+        View attached = mLayoutManager.findViewByPosition(position);
+        if (attached != null) {
+            LayoutManager.LayoutParams params = (LayoutManager.LayoutParams) attached
+                    .getLayoutParams();
+            return isSectionContent(params, sd) ? attached : null;
+        }
+
+        LayoutState.View child = state.getView(position);
+        state.cacheView(position, child.view);
+        if (!isSectionContent(child.getLayoutParams(), sd)) {
+            return null;
+        }
+        measureChild(child, sd);
+        return child.view;
+    }
+
+    /**
+     * Lay out a cached line.
+     *
+     * @return New marker line.
+     */
+    private int layoutLine(Lines lines, int line, int markerLine,
+            LayoutManager.Direction direction, SectionData sd, LayoutState state) {
+        final int start = lines.starts[line];
+        final int count = lines.getEnd(line) - start;
+        if (mLineViews.length < count) {
+            mLineViews = new LayoutState.View[count];
+        }
+        final LayoutState.View[] views = mLineViews;
+
+        // Views still cached from measuring the line in this pass don't need measuring again.
+        final boolean measured = lines.isMeasured(line, state);
+        int lineHeight = 0;
+        for (int i = 0; i < count; i++) {
+            views[i] = state.getView(start + i);
+            if (!measured || !views[i].wasCached) {
+                measureChild(views[i], sd);
+            }
+            lineHeight = Math.max(lineHeight,
+                    mLayoutManager.getDecoratedMeasuredHeight(views[i].view));
+        }
+        // Item heights can change on rebind without the adapter notifying.
+        lines.heights[line] = lineHeight;
+
+        final int top = direction == LayoutManager.Direction.END ?
+                markerLine : markerLine - lineHeight;
+        final int leftEdge = state.isLTR ? sd.contentStart : sd.contentEnd;
+        final int rightEdge = mLayoutManager.getWidth() - (state.isLTR ? sd.contentEnd :
+                sd.contentStart);
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            final LayoutState.View child = views[i];
+            final int width = mLayoutManager.getDecoratedMeasuredWidth(child.view);
+            final int left = state.isLTR ? leftEdge + offset : rightEdge - offset - width;
+            mLayoutManager.layoutDecorated(child.view, left, top, left + width,
+                    top + mLayoutManager.getDecoratedMeasuredHeight(child.view));
+            offset += width;
+        }
+
+        // Views are added at the start when filling towards the start, so add them in reverse to
+        // keep the children in position order.
+        if (direction == LayoutManager.Direction.END) {
+            for (int i = 0; i < count; i++) {
+                addView(views[i], start + i, direction, state);
+            }
+        } else {
+            for (int i = count - 1; i >= 0; i--) {
+                addView(views[i], start + i, direction, state);
+            }
+        }
+        Arrays.fill(views, 0, count, null);
+
+        return direction == LayoutManager.Direction.END ? top + lineHeight : top;
+    }
+
+    private void measureChild(LayoutState.View child, SectionData sd) {
+        mLayoutManager.measureChildWithMargins(child.view, sd.getTotalMarginWidth(), 0);
+    }
+
+    /**
+     * Line breaks for a section. Lines are found in order from the start of the section.
+     */
+    private static class Lines {
+
+        int width = -1;
+
+        int firstContentPosition;
+
+        int count;
+
+        int[] starts = new int[16];
+
+        int[] heights = new int[16];
+
+        /**
+         * Position after the last known line.
+         */
+        int end;
+
+        /**
+         * Whether the last known line is the last line of the section.
+         */
+        boolean complete;
+
+        /**
+         * Layout pass in which lines from {@link #firstMeasuredLine} on were measured.
+         */
+        LayoutState measuredState;
+
+        int firstMeasuredLine;
+
+        void add(int start, int height, int lineEnd) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                heights = Arrays.copyOf(heights, count * 2);
+            }
+            starts[count] = start;
+            heights[count] = height;
+            count += 1;
+            end = lineEnd;
+        }
+
+        int getEnd(int line) {
+            return line + 1 < count ? starts[line + 1] : end;
+        }
+
+        /**
+         * @return True if the line's views were measured earlier in the same layout pass.
+         */
+        boolean isMeasured(int line, LayoutState state) {
+            return measuredState == state && line >= firstMeasuredLine;
+        }
+
+        void reset(int width, int firstContentPosition) {
+            this.width = width;
+            this.firstContentPosition = firstContentPosition;
+            count = 0;
+            end = firstContentPosition;
+            complete = false;
+            measuredState = null;
+        }
+
+        /**
+         * Drop the lines that end at or after a position.
+         *
+         * @param position First changed position.
+         */
+        void truncate(int position) {
+            int line = count;
+            while (line > 0 && getEnd(line - 1) >= position) {
+                line -= 1;
+            }
+            if (line == count) {
+                return;
+            }
+            end = starts[line];
+            count = line;
+            complete = false;
+            measuredState = null;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,6 +13,12 @@ import android.view.ViewGroup;
  * Lays out views in a grid. The number of columns can be set directly, or a minimum size can be
  * requested. If you request a 100dip minimum column size and there is 330dip available, the layout
  * with calculate there to be 3 columns each 130dip across.
+ *
+ * <p>The column count and width resolved for each section can be read with {@link
+ * #getColumnCount(int)} and {@link #getColumnWidth(int)}, or followed with an {@link
+ * OnColumnsResolvedListener}. The listener is called during layout, after the section's header or
+ * first item has been bound but before the rest of its items are, so images can mostly be loaded
+ * at the cell size.</p>
  */
 public class GridSLM extends SectionLayoutManager {
 
@@ -31,6 +38,15 @@ public class GridSLM extends SectionLayoutManager {
 
     private boolean mColumnsSpecified;
 
+    /**
+     * Resolved column counts and widths keyed by section first position.
+     */
+    private final SparseIntArray mResolvedCounts = new SparseIntArray();
+
+    private final SparseIntArray mResolvedWidths = new SparseIntArray();
+
+    private OnColumnsResolvedListener mOnColumnsResolvedListener;
+
     public GridSLM(LayoutManager layoutManager, Context context) {
         super(layoutManager);
         mContext = context;
@@ -83,7 +99,7 @@ public class GridSLM extends SectionLayoutManager {
 
         LayoutState.View anchor = state.getView(anchorPosition);
         state.cacheView(anchorPosition, anchor.view);
-        if (anchor.getLayoutParams().getTestedFirstPosition() != sd.firstPosition) {
+        if (!isSectionContent(anchor.getLayoutParams(), sd)) {
             return markerLine;
         }
 
@@ -118,7 +134,7 @@ public class GridSLM extends SectionLayoutManager {
             }
 
             LayoutState.View view = state.getView(i);
-            if (view.getLayoutParams().getTestedFirstPosition() != sd.firstPosition) {
+            if (!isSectionContent(view.getLayoutParams(), sd)) {
                 state.cacheView(i, view.view);
                 break;
             }
@@ -162,7 +178,7 @@ public class GridSLM extends SectionLayoutManager {
                 View child = mLayoutManager.getChildAt(j);
                 LayoutManager.LayoutParams params = (LayoutManager.LayoutParams) child
                         .getLayoutParams();
-                if (params.getTestedFirstPosition() != sd.firstPosition) {
+                if (!isSectionContent(params, sd)) {
                     break;
                 }
 
@@ -282,6 +298,25 @@ public class GridSLM extends SectionLayoutManager {
         return position - ((position - firstPosition) % mNumColumns);
     }
 
+    /**
+     * @param sectionFirstPosition First position of the section.
+     * @return Number of columns in the section, or -1 if the section has not been laid out.
+     */
+    public int getColumnCount(int sectionFirstPosition) {
+        return mResolvedCounts.get(sectionFirstPosition, -1);
+    }
+
+    /**
+     * Get the width of each column in a section. The last column also takes any width left over
+     * from dividing the available width between the columns.
+     *
+     * @param sectionFirstPosition First position of the section.
+     * @return Column width, or -1 if the section has not been laid out.
+     */
+    public int getColumnWidth(int sectionFirstPosition) {
+        return mResolvedWidths.get(sectionFirstPosition, -1);
+    }
+
     @Override
     public int getLowestEdge(int sectionFirstPosition, int lastIndex, int defaultEdge) {
         int bottomMostEdge = 0;
@@ -357,7 +392,7 @@ public class GridSLM extends SectionLayoutManager {
             }
 
             LayoutState.View view = state.getView(position);
-            if (view.getLayoutParams().getTestedFirstPosition() != sd.firstPosition) {
+            if (!isSectionContent(view.getLayoutParams(), sd)) {
                 state.cacheView(position, view.view);
                 break;
             }
@@ -396,6 +431,36 @@ public class GridSLM extends SectionLayoutManager {
         return rowHeight;
     }
 
+    @Override
+    public void onItemsChanged() {
+        // Section first positions may have moved, so sections are reported again.
+        mResolvedCounts.clear();
+        mResolvedWidths.clear();
+    }
+
+    @Override
+    public void onItemsChanged(int positionStart, int positionEnd) {
+        // Only sections starting in the changed range may have moved or have new header params.
+        for (int i = mResolvedCounts.size() - 1; i >= 0; i--) {
+            final int sfp = mResolvedCounts.keyAt(i);
+            if (sfp >= positionStart && sfp < positionEnd) {
+                mResolvedCounts.delete(sfp);
+                mResolvedWidths.delete(sfp);
+            }
+        }
+    }
+
+    /**
+     * Set a listener to be told the columns of each section, when they are first worked out and
+     * whenever they change, such as when the width changes. The listener is called during layout,
+     * so it must not change the adapter.
+     *
+     * @param listener Listener, or null to clear it.
+     */
+    public void setOnColumnsResolvedListener(OnColumnsResolvedListener listener) {
+        mOnColumnsResolvedListener = listener;
+    }
+
     @Deprecated
     public void setColumnWidth(int minimumWidth) {
         mMinimumWidth = minimumWidth;
@@ -427,6 +492,17 @@ public class GridSLM extends SectionLayoutManager {
                     "Too many columns (" + mNumColumns + ") for available width" + availableWidth
                             + ".");
         }
+
+        if (mResolvedCounts.get(sd.firstPosition, -1) == mNumColumns
+                && mResolvedWidths.get(sd.firstPosition, -1) == mColumnWidth) {
+            return;
+        }
+        mResolvedCounts.put(sd.firstPosition, mNumColumns);
+        mResolvedWidths.put(sd.firstPosition, mColumnWidth);
+        if (mOnColumnsResolvedListener != null) {
+            mOnColumnsResolvedListener.onColumnsResolved(sd.firstPosition, mNumColumns,
+                    mColumnWidth);
+        }
     }
 
     /**
@@ -476,6 +552,23 @@ public class GridSLM extends SectionLayoutManager {
                 0);
     }
 
+    /**
+     * Listener for the columns resolved for each section.
+     */
+    public interface OnColumnsResolvedListener {
+
+        /**
+         * Called during layout when a section's columns are worked out. The section's header, or
+         * the item layout started from, has already been bound, but the rest of its items have
+         * not. The adapter must not be changed from here.
+         *
+         * @param sectionFirstPosition First position of the section.
+         * @param numColumns           Number of columns.
+         * @param columnWidth          Width of each column.
+         */
+        void onColumnsResolved(int sectionFirstPosition, int numColumns, int columnWidth);
+    }
+
     public static class LayoutParams extends LayoutManager.LayoutParams {
 
         private int mNumColumns;
@@ -3,9 +3,13 @@ package com.tonicartos.superslim;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.IntDef;
@@ -17,6 +21,8 @@ import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.view.FrameStats;
 import android.view.View;
@@ -25,6 +31,7 @@ import android.view.ViewGroup;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -43,32 +50,483 @@ public class LayoutManager extends RecyclerView.LayoutManager {
 
     static final int SECTION_MANAGER_STAGGERED_GRID = 0x03;
 
+    static final int SECTION_MANAGER_FLOW = 0x04;
+
+    static final int SECTION_MANAGER_TABLE = 0x05;
+
     private static final int NO_POSITION_REQUEST = -1;
 
+    /**
+     * Top line passed to overscroll correction when the layout did not start from the first item.
+     */
+    private static final int NO_TOP_LINE = Integer.MIN_VALUE;
+
+    /**
+     * Maximum number of views bound ahead in one scroll frame. Matches the recycler's default view
+     * cache size, as binding more would push the first views bound out of the cache and into the
+     * pool, where they lose their binding.
+     */
+    private static final int MAX_PREFETCHED_VIEWS = 2;
+
+    /**
+     * Number of views of each type the recycled view pool keeps unless told otherwise.
+     */
+    private static final int DEFAULT_POOL_SIZE = 5;
+
+    /**
+     * Fling friction. This is the platform default, which is only public from API 11.
+     */
+    private static final float SCROLL_FRICTION = 0.015f;
+
+    private static final float FLING_INFLEXION = 0.35f;
+
+    private static final float FLING_DECELERATION_RATE =
+            (float) (Math.log(0.78) / Math.log(0.9));
+
+    /**
+     * Longest gap between scroll frames that still counts as the same scroll.
+     */
+    private static final long VELOCITY_TIMEOUT_NS = 100 * 1000000L;
+
+    private static final String STATE_LINEAR_SLM = "superslim:linear";
+
+    private static final String STATE_GRID_SLM = "superslim:grid";
+
+    private static final String STATE_FLOW_SLM = "superslim:flow";
+
+    private static final String STATE_TABLE_SLM = "superslim:table";
+
+    private static final String STATE_CUSTOM_SLM_PREFIX = "superslim:custom:";
+
     private final SectionLayoutManager mLinearSlm;
 
-    private final SectionLayoutManager mGridSlm;
+    private final GridSLM mGridSlm;
+
+    private final SectionLayoutManager mFlowSlm;
+
+    private final SectionLayoutManager mTableSlm;
 
     private int mRequestPosition = NO_POSITION_REQUEST;
 
     private Rect mRect = new Rect();
 
+    private final Rect mDecorInsets = new Rect();
+
     private int mRequestPositionOffset = 0;
 
+    /**
+     * Stable id of the item at the requested position, used to find the item again if the data
+     * set changed before the layout.
+     */
+    private long mRequestAnchorId = RecyclerView.NO_ID;
+
     private HashMap<String, SectionLayoutManager> mSlms;
 
     private boolean mSmoothScrollEnabled = true;
 
+    private RecyclerView.Adapter mAdapter;
+
+    private SectionedAdapter mSectionedAdapter;
+
+    /**
+     * Collapsed sections from a restored state, to be applied once the sectioned adapter is known.
+     */
+    private boolean[] mPendingCollapsedSections;
+
+    private int mPendingSectionItemCount;
+
+    /**
+     * Restored state for custom section layout managers which have not been added yet.
+     */
+    private Bundle mPendingSlmStates;
+
+    /**
+     * Header sizes by section first position, so headers are not measured again every time they
+     * are fetched while scrolling.
+     */
+    private final SparseArray<HeaderSize> mHeaderSizes = new SparseArray<>();
+
+    /**
+     * Footer sizes by adapter position. Sticky footers are fetched and measured again on every
+     * scroll while their section is at the end edge.
+     */
+    private final SparseArray<HeaderSize> mFooterSizes = new SparseArray<>();
+
+    /**
+     * Set by adapter change notifications, after which the stacked headers' positions and data
+     * can no longer be trusted.
+     */
+    private boolean mStackedHeadersInvalid = false;
+
+    /**
+     * Time a scroll frame may spend filling and binding ahead, or 0 to not bind ahead.
+     */
+    private long mFrameBudgetNs;
+
+    /**
+     * Running average of the time taken to fetch and bind a view from the recycler.
+     */
+    private long mViewCostNs;
+
+    private boolean mStackFromEnd;
+
+    /**
+     * Headers of the sections that the section at the start edge is nested in, outermost first.
+     * They are drawn over the content by a decoration rather than attached, so the order of the
+     * attached children is left alone.
+     */
+    private final ArrayList<StackedHeader> mStackedHeaders = new ArrayList<>();
+
+    /**
+     * Stacked header records kept for reuse, as the stack is rebuilt on every scroll frame.
+     */
+    private final ArrayList<StackedHeader> mStackedHeaderPool = new ArrayList<>();
+
+    /**
+     * Ancestors of the section at the start edge, reused between scroll frames.
+     */
+    private int[] mStackAncestors = new int[0];
+
+    private final StackedHeaderDecoration mStackedHeaderDecoration =
+            new StackedHeaderDecoration();
+
+    private boolean mStackedHeadersEnabled = false;
+
+    private RecyclerView mRecyclerView;
+
+    /**
+     * Deceleration of a fling in pixels per second squared, before friction is applied.
+     */
+    private final float mFlingDeceleration;
+
+    private int mScrollState = RecyclerView.SCROLL_STATE_IDLE;
+
+    /**
+     * Smoothed scroll velocity in pixels per second, positive towards the end.
+     */
+    private float mScrollVelocity;
+
+    private long mLastScrollNs;
+
+    private int mLightweightBindVelocity;
+
+    /**
+     * Whether any view has been bound lightly since scrolling last settled.
+     */
+    private boolean mLightweightBindsPending;
+
+    private boolean mPoolSizing = true;
+
+    /**
+     * Size given to the recycled view pool for each view type. Sizes only grow, so views that go
+     * off screen together fit in the pool together.
+     */
+    private final SparseIntArray mPoolSizes = new SparseIntArray();
+
+    private final SparseIntArray mPoolCounts = new SparseIntArray();
+
+    private final SparseIntArray mPoolRows = new SparseIntArray();
+
+    /**
+     * View types that have been on screen since the pool was last sized from scratch.
+     */
+    private final SparseBooleanArray mPoolViewTypes = new SparseBooleanArray();
+
+    /**
+     * Set when a section or view type comes on screen while scrolling, so the pool is sized again
+     * at the end of the frame.
+     */
+    private boolean mPoolSizesInvalid;
+
+    /**
+     * View holders still to be created ahead of time, by view type.
+     */
+    private final SparseIntArray mPrewarmCounts = new SparseIntArray();
+
+    private boolean mPrewarmScheduled;
+
+    private final MessageQueue.IdleHandler mPrewarmHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            // Create one holder each time the thread goes idle, so no single idle takes long.
+            if (mRecyclerView == null || mRecyclerView.getAdapter() == null
+                    || mPrewarmCounts.size() == 0) {
+                mPrewarmCounts.clear();
+                mPrewarmScheduled = false;
+                return false;
+            }
+
+            final int viewType = mPrewarmCounts.keyAt(0);
+            final int remaining = mPrewarmCounts.valueAt(0) - 1;
+            if (remaining == 0) {
+                mPrewarmCounts.removeAt(0);
+            } else {
+                mPrewarmCounts.put(viewType, remaining);
+            }
+
+            RecyclerView.ViewHolder holder = mRecyclerView.getAdapter()
+                    .createViewHolder(mRecyclerView, viewType);
+            mRecyclerView.getRecycledViewPool().putRecycledView(holder);
+
+            mPrewarmScheduled = mPrewarmCounts.size() > 0;
+            return mPrewarmScheduled;
+        }
+    };
+
+    /**
+     * Size at the last layout, used to detect when only the height has changed.
+     */
+    private int mLastWidth;
+
+    private int mLastHeight;
+
+    /**
+     * Set when something other than the size may have changed since the last full layout.
+     */
+    private boolean mFullLayoutRequired = true;
+
+    private final ArrayList<OnVisibleRangeChangedListener> mVisibleRangeListeners
+            = new ArrayList<>();
+
+    private final VisibleRange mVisibleRange = new VisibleRange();
+
+    private final SectionBounds mSectionBounds = new SectionBounds();
+
+    /**
+     * Set after each layout and scroll, so section bounds are only gathered when asked for.
+     */
+    private boolean mSectionBoundsInvalid = true;
+
+    private OnApproachingEndListener mApproachingEndListener;
+
+    private int mApproachingEndItemThreshold;
+
+    private int mApproachingEndPixelThreshold;
+
+    /**
+     * Item count when the approaching end listener was last called, so it is only called once for
+     * each page of data.
+     */
+    private int mApproachingEndItemCount = RecyclerView.NO_POSITION;
+
+    private final Runnable mApproachingEndRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mApproachingEndListener != null) {
+                mApproachingEndListener.onApproachingEnd(mApproachingEndItemCount);
+            }
+        }
+    };
+
     public LayoutManager(Context context) {
         mLinearSlm = new LinearSLM(this);
         mGridSlm = new GridSLM(this, context);
+        mFlowSlm = new FlowSLM(this);
+        mTableSlm = new TableSLM(this);
         mSlms = new HashMap<>();
+        mFlingDeceleration = computeFlingDeceleration(context);
     }
 
     LayoutManager(Builder builder) {
         mLinearSlm = new LinearSLM(this);
         mGridSlm = new GridSLM(this, builder.context);
+        mFlowSlm = new FlowSLM(this);
+        mTableSlm = new TableSLM(this);
         mSlms = builder.slms;
+        mFlingDeceleration = computeFlingDeceleration(builder.context);
+    }
+
+    /**
+     * Add a listener to be told what is visible after each layout and scroll.
+     *
+     * @param listener Listener to add.
+     */
+    public void addOnVisibleRangeChangedListener(OnVisibleRangeChangedListener listener) {
+        if (!mVisibleRangeListeners.contains(listener)) {
+            mVisibleRangeListeners.add(listener);
+        }
+    }
+
+    public void removeOnVisibleRangeChangedListener(OnVisibleRangeChangedListener listener) {
+        mVisibleRangeListeners.remove(listener);
+    }
+
+    /**
+     * Get the bounds of each section with attached views. The bounds are gathered at most once
+     * after each layout and scroll, however many times they are asked for.
+     *
+     * @return Section bounds as of the last layout or scroll.
+     */
+    public SectionBounds getSectionBounds() {
+        if (mSectionBoundsInvalid) {
+            mSectionBounds.update(this);
+            mSectionBoundsInvalid = false;
+        }
+        return mSectionBounds;
+    }
+
+    /**
+     * Set a listener to be told when the end of the data is getting close, so the next page can be
+     * fetched before it is reached. The listener is called once for each item count, when either
+     * threshold is met.
+     *
+     * @param listener       Listener, or null to remove.
+     * @param itemThreshold  Call the listener when this many items or fewer are left after the
+     *                       last attached item.
+     * @param pixelThreshold Call the listener when the content left below the visible area is
+     *                       estimated to be this many pixels or fewer.
+     */
+    public void setOnApproachingEndListener(OnApproachingEndListener listener, int itemThreshold,
+            int pixelThreshold) {
+        mApproachingEndListener = listener;
+        mApproachingEndItemThreshold = itemThreshold;
+        mApproachingEndPixelThreshold = pixelThreshold;
+        mApproachingEndItemCount = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Keep content against the end edge instead of the start edge, as for a chat. Layout is
+     * anchored on the last item at the end edge, content shorter than the view sits at the end,
+     * and a change in height keeps the end in place. Sticky headers still stick to the start edge.
+     *
+     * @param stackFromEnd Whether to stack content from the end edge.
+     */
+    public void setStackFromEnd(boolean stackFromEnd) {
+        if (mStackFromEnd == stackFromEnd) {
+            return;
+        }
+        mStackFromEnd = stackFromEnd;
+        mFullLayoutRequired = true;
+        requestLayout();
+    }
+
+    public boolean getStackFromEnd() {
+        return mStackFromEnd;
+    }
+
+    /**
+     * Set a time budget for each scroll frame. Any time left after filling is used to bind views
+     * just beyond the end being scrolled towards, so the frames that reach them don't have to.
+     * How many are bound ahead depends on how long binding has been taking. Views are only bound
+     * ahead while scrolling, so the first layout binds no more than what is visible.
+     *
+     * @param millis Budget in milliseconds, or 0 to not bind ahead.
+     */
+    public void setFrameBudget(int millis) {
+        mFrameBudgetNs = millis * 1000000L;
+        mViewCostNs = 0;
+    }
+
+    /**
+     * Create view holders ahead of time, for example for the items of a section that is coming
+     * up. Holders are created one at a time while the main thread is idle and put in the recycled
+     * view pool, which is grown to hold them.
+     *
+     * @param viewType View type to create holders for.
+     * @param count    Number of holders to create.
+     */
+    public void prewarmViews(int viewType, int count) {
+        if (count <= 0) {
+            return;
+        }
+        mPrewarmCounts.put(viewType, mPrewarmCounts.get(viewType) + count);
+        if (mRecyclerView != null) {
+            growPool(viewType, mPoolSizes.get(viewType, DEFAULT_POOL_SIZE) + count);
+            schedulePrewarm();
+        }
+    }
+
+    /**
+     * Predict the position at the start edge once the current fling settles. Distance is estimated
+     * with the platform's fling curve and turned into positions from the average height of the
+     * attached views.
+     *
+     * @return Predicted position, or the first visible position if not scrolling.
+     */
+    public int getPredictedSettlePosition() {
+        final int first = findFirstVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || mScrollVelocity == 0) {
+            return first;
+        }
+
+        int contentTop = Integer.MAX_VALUE;
+        int contentBottom = Integer.MIN_VALUE;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            contentTop = Math.min(contentTop, getDecoratedTop(child));
+            contentBottom = Math.max(contentBottom, getDecoratedBottom(child));
+        }
+        final int averageHeight = Math.max(1, (contentBottom - contentTop) / getChildCount());
+
+        final int positions = (int) (getFlingDistance(Math.abs(mScrollVelocity)) / averageHeight);
+        final int predicted = mScrollVelocity > 0 ? first + positions : first - positions;
+        return Math.max(0, Math.min(getItemCount() - 1, predicted));
+    }
+
+    /**
+     * @return Current scroll velocity in pixels per second, positive towards the end, or 0 if not
+     * scrolling.
+     */
+    public float getScrollVelocity() {
+        return mScrollVelocity;
+    }
+
+    public int getLightweightBindVelocity() {
+        return mLightweightBindVelocity;
+    }
+
+    /**
+     * Set the fling speed above which adapters are told to bind lightly. See {@link
+     * #isLightweightBind()}.
+     *
+     * @param pixelsPerSecond Speed in pixels per second, or 0 to never bind lightly.
+     */
+    public void setLightweightBindVelocity(int pixelsPerSecond) {
+        mLightweightBindVelocity = pixelsPerSecond;
+    }
+
+    /**
+     * Check whether views bound now should be bound lightly. This is true while a fling is faster
+     * than the lightweight bind velocity, when bound views are likely to only show for a frame or
+     * two. Adapters can check this in {@link RecyclerView.Adapter#onBindViewHolder} to skip image
+     * loads and other expensive work. Views bound lightly are bound again in full once scrolling
+     * settles, or when they are next used after that. A {@link SectionedAdapter} records which
+     * views it bound lightly; other adapters record it with {@link
+     * LayoutParams#setBoundLightly(boolean)}, or their views are not bound again.
+     *
+     * @return True if views should be bound lightly.
+     */
+    public boolean isLightweightBind() {
+        return mLightweightBindVelocity > 0
+                && mScrollState == RecyclerView.SCROLL_STATE_SETTLING
+                && Math.abs(mScrollVelocity) >= mLightweightBindVelocity;
+    }
+
+    /**
+     * Get the section layout manager used for sections of the built in grid kind, for example to
+     * follow the columns it resolves for each section.
+     *
+     * @return Grid section layout manager.
+     */
+    public GridSLM getGridSlm() {
+        return mGridSlm;
+    }
+
+    public boolean getRecycledViewPoolSizing() {
+        return mPoolSizing;
+    }
+
+    /**
+     * Set whether the recycled view pool is sized from what is on screen. The pool keeps five
+     * views of each type by default, fewer than a wide grid section can send off screen at once.
+     * When on, the pool is grown for each view type to the number on screen plus a row. Sizes are
+     * worked out on each layout, and while scrolling only when a section or view type first comes
+     * on screen.
+     *
+     * @param enabled Whether to size the pool. On by default.
+     */
+    public void setRecycledViewPoolSizing(boolean enabled) {
+        mPoolSizing = enabled;
     }
 
     /**
@@ -79,6 +537,11 @@ public class LayoutManager extends RecyclerView.LayoutManager {
      */
     public void addSlm(String key, SectionLayoutManager slm) {
         mSlms.put(key, slm);
+        if (mPendingSlmStates != null
+                && mPendingSlmStates.containsKey(STATE_CUSTOM_SLM_PREFIX + key)) {
+            slm.onRestoreInstanceState(
+                    mPendingSlmStates.getParcelable(STATE_CUSTOM_SLM_PREFIX + key));
+        }
     }
 
     /**
@@ -239,6 +702,34 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return slm.findLastVisibleItemPosition(sd.firstPosition);
     }
 
+    public boolean isStackedHeadersEnabled() {
+        return mStackedHeadersEnabled;
+    }
+
+    /**
+     * Set whether the sticky headers of the sections that the section at the start edge is
+     * nested in are stacked above it. When on, an item decoration that draws the stacked headers
+     * is added to the recycler view while the layout manager is attached.
+     *
+     * @param enabled Whether to stack headers. Off by default.
+     * @see SectionedAdapter#getSectionDepth(int)
+     */
+    public void setStackedHeadersEnabled(boolean enabled) {
+        if (mStackedHeadersEnabled == enabled) {
+            return;
+        }
+        mStackedHeadersEnabled = enabled;
+        if (mRecyclerView != null) {
+            if (enabled) {
+                mRecyclerView.addItemDecoration(mStackedHeaderDecoration);
+            } else {
+                mRecyclerView.removeItemDecoration(mStackedHeaderDecoration);
+            }
+        }
+        mStackedHeadersInvalid = true;
+        requestLayout();
+    }
+
     public boolean isSmoothScrollEnabled() {
         return mSmoothScrollEnabled;
     }
@@ -252,17 +743,44 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         int itemCount = state.getItemCount();
         if (itemCount == 0) {
             detachAndScrapAttachedViews(recycler);
+            mSectionBoundsInvalid = true;
+            return;
+        }
+
+        restoreCollapsedSections();
+        rebindLightweightViews(recycler);
+
+        if (isHeightOnlyChange(state)) {
+            layoutForHeightChange(recycler, state);
+            updatePoolSizes();
+            dispatchLayoutCallbacks(state);
             return;
         }
 
+        // Item decorations may have been invalidated, so measure headers and footers again at
+        // least once.
+        mHeaderSizes.clear();
+        mFooterSizes.clear();
+        dropInvalidStackedHeaders();
+
         final int requestedPosition;
         final int borderLine;
+        boolean fromEnd = false;
 
         if (mRequestPosition != NO_POSITION_REQUEST) {
-            requestedPosition = Math.min(mRequestPosition, itemCount - 1);
+            requestedPosition = findPositionForAnchorId(mRequestAnchorId,
+                    Math.min(mRequestPosition, itemCount - 1), itemCount);
             mRequestPosition = NO_POSITION_REQUEST;
+            mRequestAnchorId = RecyclerView.NO_ID;
             borderLine = mRequestPositionOffset;
             mRequestPositionOffset = 0;
+        } else if (mStackFromEnd) {
+            View anchorView = getEndAnchorChild();
+            requestedPosition = anchorView == null ?
+                    itemCount - 1 : Math.min(getPosition(anchorView), itemCount - 1);
+            borderLine = anchorView == null ?
+                    getHeight() - getPaddingBottom() : getDecoratedBottom(anchorView);
+            fromEnd = true;
         } else {
             View anchorView = getAnchorChild();
             requestedPosition = anchorView == null ?
@@ -273,9 +791,30 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         detachAndScrapAttachedViews(recycler);
 
         LayoutState layoutState = new LayoutState(this, recycler, state);
-        int bottomLine = layoutChildren(requestedPosition, borderLine, layoutState);
+        releaseStackedHeaders(layoutState);
+
+        if (fromEnd) {
+            layoutChildrenFromEnd(requestedPosition, borderLine, layoutState);
+        } else if (mStackFromEnd) {
+            stackToEnd(layoutChildren(requestedPosition, borderLine, layoutState), layoutState);
+        } else {
+            final int bottomLine = layoutChildren(requestedPosition, borderLine, layoutState);
+            // The first item is laid out at the border line if the layout started from it.
+            final int topLine = previousVisiblePosition(requestedPosition) == 0 ?
+                    borderLine : NO_TOP_LINE;
+            fixOverscroll(topLine, bottomLine, layoutState);
+        }
+        updateStickyFooter(layoutState);
+        updateStackedHeaders(layoutState);
 
-        fixOverscroll(bottomLine, layoutState);
+        layoutState.recycleCache();
+
+        mLastWidth = getWidth();
+        mLastHeight = getHeight();
+        mFullLayoutRequired = false;
+
+        updatePoolSizes();
+        dispatchLayoutCallbacks(state);
     }
 
     @Override
@@ -335,6 +874,10 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             return 0;
         }
 
+        trackScrollVelocity(dy);
+
+        final long frameStart = mFrameBudgetNs > 0 ? System.nanoTime() : 0;
+        dropInvalidStackedHeaders();
         LayoutState layoutState = new LayoutState(this, recycler, state);
 
         final Direction direction = dy > 0 ? Direction.END : Direction.START;
@@ -347,17 +890,20 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         // have to handle the end direction because we never over scroll the top or lay out
         // from the bottom up.
         if (isDirectionEnd) {
-            final View end = getAnchorAtEnd();
+            // A footer stuck to the end edge is skipped, as there is more content before it.
+            final int endIndex = getAnchorIndexAtEnd();
+            final View end = getChildAt(endIndex);
             LayoutParams params = (LayoutParams) end.getLayoutParams();
             SectionLayoutManager slm = getSlm(params);
             final int endEdge = slm.getLowestEdge(
-                    params.getTestedFirstPosition(), getChildCount() - 1, getDecoratedBottom(end));
+                    params.getTestedFirstPosition(), endIndex, getDecoratedBottom(end));
             if (endEdge < height - getPaddingBottom() &&
-                    getPosition(end) == (state.getItemCount() - 1)) {
+                    nextVisiblePosition(getPosition(end) + 1) >= state.getItemCount()) {
                 return 0;
             }
         }
 
+        releaseStackedHeaders(layoutState);
         final int fillEdge = fillUntil(leadingEdge, direction, layoutState);
 
         final int delta;
@@ -367,20 +913,56 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             delta = fillDelta < dy ? fillDelta : dy;
         } else {
             int fillDelta = fillEdge - getPaddingTop();
+            if (mStackFromEnd && fillDelta > 0) {
+                // Content shorter than the view is stacked at the end, so there is nowhere to go.
+                fillDelta = 0;
+            }
             delta = fillDelta > dy ? fillDelta : dy;
         }
 
         if (delta != 0) {
             offsetChildrenVertical(-delta);
+        }
+
+        // Stick the footer before trimming, so it isn't trimmed for having been beyond the end.
+        updateStickyFooter(layoutState);
 
+        if (delta != 0) {
             trimTail(isDirectionEnd ? Direction.START : Direction.END, layoutState);
         }
+        updateStackedHeaders(layoutState);
+        if (delta != 0) {
+            prefetchViews(direction, frameStart, layoutState);
+        }
 
         layoutState.recycleCache();
 
+        if (delta != 0) {
+            if (mPoolSizesInvalid) {
+                updatePoolSizes();
+            }
+            dispatchLayoutCallbacks(state);
+        }
+
         return delta;
     }
 
+    @Override
+    public void onScrollStateChanged(int state) {
+        super.onScrollStateChanged(state);
+        mScrollState = state;
+        if (state != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+
+        mScrollVelocity = 0;
+        mLastScrollNs = 0;
+        if (mLightweightBindsPending) {
+            // Views bound lightly are bound again in the layout pass.
+            requestLayout();
+        }
+    }
+
     @Override
     public boolean canScrollVertically() {
         return true;
@@ -395,6 +977,7 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         }
 
         mRequestPosition = position;
+        mRequestAnchorId = RecyclerView.NO_ID;
         requestLayout();
     }
 
@@ -519,23 +1102,124 @@ public class LayoutManager extends RecyclerView.LayoutManager {
     @Override
     public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
         removeAllViews();
+        mHeaderSizes.clear();
+        mFooterSizes.clear();
+        // Views from the old adapter must not go into the new adapter's pool.
+        mStackedHeaders.clear();
+        mStackedHeadersInvalid = false;
+        mFullLayoutRequired = true;
+        notifySlmsItemsChanged();
+        // View types mean something else to the new adapter.
+        mPoolSizes.clear();
+        mPoolViewTypes.clear();
+        mPrewarmCounts.clear();
+        setAdapter(newAdapter);
+    }
+
+    /**
+     * Adds an item decoration to the recycler view that draws the stacked headers of nested
+     * sections, if they are enabled. It is removed again when the layout manager is detached.
+     */
+    @Override
+    public void onAttachedToWindow(RecyclerView view) {
+        super.onAttachedToWindow(view);
+        setAdapter(view.getAdapter());
+        if (mStackedHeadersEnabled) {
+            view.addItemDecoration(mStackedHeaderDecoration);
+        }
+        mRecyclerView = view;
+        for (int i = 0; i < mPrewarmCounts.size(); i++) {
+            final int viewType = mPrewarmCounts.keyAt(i);
+            growPool(viewType, mPoolSizes.get(viewType, DEFAULT_POOL_SIZE)
+                    + mPrewarmCounts.valueAt(i));
+        }
+        schedulePrewarm();
+    }
+
+    @Override
+    public void onDetachedFromWindow(RecyclerView view) {
+        super.onDetachedFromWindow(view);
+        view.removeItemDecoration(mStackedHeaderDecoration);
+        if (mPrewarmScheduled) {
+            Looper.myQueue().removeIdleHandler(mPrewarmHandler);
+            mPrewarmScheduled = false;
+        }
+        mRecyclerView = null;
+        mPoolSizes.clear();
+        mPoolViewTypes.clear();
+        mHeaderSizes.clear();
+        mFooterSizes.clear();
+        mStackedHeadersInvalid = false;
+        mStackedHeaders.clear();
+        setAdapter(null);
+    }
+
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        mHeaderSizes.clear();
+        mFooterSizes.clear();
+        mStackedHeadersInvalid = true;
+        mFullLayoutRequired = true;
+        notifySlmsItemsChanged(positionStart, Integer.MAX_VALUE);
     }
 
     @Override
     public void onItemsChanged(RecyclerView recyclerView) {
+        mHeaderSizes.clear();
+        mFooterSizes.clear();
+        mStackedHeadersInvalid = true;
+        mFullLayoutRequired = true;
+        notifySlmsItemsChanged();
         View view = getAnchorChild();
         if (view == null) {
             mRequestPosition = NO_POSITION_REQUEST;
             mRequestPositionOffset = 0;
+            mRequestAnchorId = RecyclerView.NO_ID;
         } else {
             mRequestPosition = getPosition(view);
             mRequestPositionOffset = getDecoratedTop(view);
+            // The adapter already has the new data, so take the id from the bound view.
+            mRequestAnchorId = recyclerView.getChildItemId(view);
         }
     }
 
+    @Override
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        mHeaderSizes.clear();
+        mFooterSizes.clear();
+        mStackedHeadersInvalid = true;
+        mFullLayoutRequired = true;
+        notifySlmsItemsChanged(Math.min(from, to), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        mHeaderSizes.clear();
+        mFooterSizes.clear();
+        mStackedHeadersInvalid = true;
+        mFullLayoutRequired = true;
+        notifySlmsItemsChanged(positionStart, Integer.MAX_VALUE);
+    }
+
     @Override
     public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
         super.onItemsUpdated(recyclerView, positionStart, itemCount);
+        mStackedHeadersInvalid = true;
+        mFullLayoutRequired = true;
+        notifySlmsItemsChanged(positionStart, positionStart + itemCount);
+
+        for (int i = mHeaderSizes.size() - 1; i >= 0; i--) {
+            final int sfp = mHeaderSizes.keyAt(i);
+            if (sfp >= positionStart && sfp < positionStart + itemCount) {
+                mHeaderSizes.removeAt(i);
+            }
+        }
+        for (int i = mFooterSizes.size() - 1; i >= 0; i--) {
+            final int position = mFooterSizes.keyAt(i);
+            if (position >= positionStart && position < positionStart + itemCount) {
+                mFooterSizes.removeAt(i);
+            }
+        }
 
         View first = getChildAt(0);
         View last = getChildAt(getChildCount() - 1);
@@ -564,7 +1248,7 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         contentInView -= getFractionOfContentAbove(state, true);
         contentInView -= getFractionOfContentBelow(state, true);
 
-        return (int) (contentInView / state.getItemCount() * getHeight());
+        return (int) (contentInView / getVisibleItemCount(state) * getHeight());
     }
 
     @Override
@@ -574,19 +1258,20 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         }
 
         final View child = getChildAt(0);
+        final int visiblePosition = getPosition(child) - getHiddenCountBefore(getPosition(child));
         if (!mSmoothScrollEnabled) {
-            return getPosition(child);
+            return visiblePosition;
         }
 
-        float contentAbove = getPosition(child);
+        float contentAbove = visiblePosition;
         contentAbove += getFractionOfContentAbove(state, false);
-        return (int) (contentAbove / state.getItemCount() * getHeight());
+        return (int) (contentAbove / getVisibleItemCount(state) * getHeight());
     }
 
     @Override
     public int computeVerticalScrollRange(RecyclerView.State state) {
         if (!mSmoothScrollEnabled) {
-            return state.getItemCount();
+            return getVisibleItemCount(state);
         }
 
         return getHeight();
@@ -599,10 +1284,20 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         if (view == null) {
             state.anchorPosition = 0;
             state.anchorOffset = 0;
+            state.anchorId = RecyclerView.NO_ID;
         } else {
             state.anchorPosition = getPosition(view);
             state.anchorOffset = getDecoratedTop(view);
+            state.anchorId = mAdapter != null && mAdapter.hasStableIds() ?
+                    mAdapter.getItemId(state.anchorPosition) : RecyclerView.NO_ID;
         }
+
+        SectionIndex index = getSectionIndex();
+        if (index != null && index.getHiddenItemCount() > 0) {
+            state.sectionItemCount = index.getItemCount();
+            state.collapsedSections = index.getCollapsedSections();
+        }
+        state.slmStates = saveSlmStates();
         return state;
     }
 
@@ -610,6 +1305,10 @@ public class LayoutManager extends RecyclerView.LayoutManager {
     public void onRestoreInstanceState(Parcelable state) {
         mRequestPosition = ((SavedState) state).anchorPosition;
         mRequestPositionOffset = ((SavedState) state).anchorOffset;
+        mRequestAnchorId = ((SavedState) state).anchorId;
+        mPendingCollapsedSections = ((SavedState) state).collapsedSections;
+        mPendingSectionItemCount = ((SavedState) state).sectionItemCount;
+        restoreSlmStates(((SavedState) state).slmStates);
         requestLayout();
     }
 
@@ -637,6 +1336,65 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return borderline;
     }
 
+    /**
+     * Get the section index of the adapter, if it provides one.
+     *
+     * @return Section index or null.
+     */
+    SectionIndex getSectionIndex() {
+        return mSectionedAdapter == null ? null : mSectionedAdapter.getSectionIndex();
+    }
+
+    /**
+     * Check if a section has been collapsed to its header.
+     *
+     * @param sfp Section first position.
+     * @return True if the section's content is hidden.
+     */
+    boolean isSectionCollapsed(int sfp) {
+        SectionIndex index = getSectionIndex();
+        if (index == null || sfp < 0 || sfp >= index.getItemCount()) {
+            return false;
+        }
+        return index.isCollapsed(index.getSectionForPosition(sfp));
+    }
+
+    /**
+     * Called when a section of the sectioned adapter is collapsed or expanded. A new layout is
+     * only needed if the change could be seen.
+     *
+     * @param positionStart First position of the section.
+     * @param itemCount     Number of items in the section, including the header.
+     */
+    void onSectionCollapseChanged(int positionStart, int itemCount) {
+        mFullLayoutRequired = true;
+        if (getChildCount() == 0) {
+            requestLayout();
+            return;
+        }
+
+        // The anchor's position is unchanged, so sections above the content can be ignored.
+        if (positionStart + itemCount <= getPosition(getChildAt(0))) {
+            return;
+        }
+
+        final View last = getAnchorAtEnd();
+        if (positionStart > getPosition(last)
+                && getDecoratedBottom(last) >= getHeight() - getPaddingBottom()) {
+            return;
+        }
+
+        requestLayout();
+    }
+
+    boolean hasFrameBudget() {
+        return mFrameBudgetNs > 0;
+    }
+
+    void recordViewCost(long nanos) {
+        mViewCostNs = mViewCostNs == 0 ? nanos : (mViewCostNs * 3 + nanos) / 4;
+    }
+
     void measureHeader(View header) {
         // Width to leave for the mSection to which this header belongs. Only applies if the
         // header is being laid out adjacent to the mSection.
@@ -650,7 +1408,53 @@ public class LayoutManager extends RecyclerView.LayoutManager {
                 unavailableWidth = recyclerWidth - lp.headerMarginEnd;
             }
         }
+
+        // Skip measuring if this header was already measured for the same space and hasn't
+        // changed since.
+        final int sfp = lp.getTestedFirstPosition();
+        HeaderSize size = mHeaderSizes.get(sfp);
+        if (size != null && size.view == header && size.width == getWidth()
+                && size.unavailableWidth == unavailableWidth && !header.isLayoutRequested()
+                && size.measuredWidth == header.getMeasuredWidth()
+                && size.measuredHeight == header.getMeasuredHeight()) {
+            return;
+        }
+
         measureChildWithMargins(header, unavailableWidth, 0);
+
+        if (size == null) {
+            size = new HeaderSize();
+            mHeaderSizes.put(sfp, size);
+        }
+        size.view = header;
+        size.width = getWidth();
+        size.unavailableWidth = unavailableWidth;
+        size.measuredWidth = header.getMeasuredWidth();
+        size.measuredHeight = header.getMeasuredHeight();
+    }
+
+    void measureFooter(View footer) {
+        // Skip measuring if this footer was already measured for the same width and hasn't
+        // changed since.
+        final int position = getPosition(footer);
+        HeaderSize size = mFooterSizes.get(position);
+        if (size != null && size.view == footer && size.width == getWidth()
+                && !footer.isLayoutRequested()
+                && size.measuredWidth == footer.getMeasuredWidth()
+                && size.measuredHeight == footer.getMeasuredHeight()) {
+            return;
+        }
+
+        measureChildWithMargins(footer, 0, 0);
+
+        if (size == null) {
+            size = new HeaderSize();
+            mFooterSizes.put(position, size);
+        }
+        size.view = footer;
+        size.width = getWidth();
+        size.measuredWidth = footer.getMeasuredWidth();
+        size.measuredHeight = footer.getMeasuredHeight();
     }
 
     private void attachHeaderForStart(View header, int leadingEdge, SectionData sd,
@@ -697,20 +1501,56 @@ public class LayoutManager extends RecyclerView.LayoutManager {
                 return mid;
             }
 
-            next = getChildAt(mid + 2);
-            lp = (LayoutParams) next.getLayoutParams();
-            if (lp.getTestedFirstPosition() != sfp) {
-                return mid;
-            }
+            next = getChildAt(mid + 2);
+            lp = (LayoutParams) next.getLayoutParams();
+            if (lp.getTestedFirstPosition() != sfp) {
+                return mid;
+            }
+        }
+
+        return binarySearchForLastPosition(mid + 1, max, sfp);
+    }
+
+    /**
+     * Attach the footer of a section after its content, if the section has one and it is the next
+     * item to lay out.
+     *
+     * @param leadingEdge Line to fill up to. Content will not be wholly beyond this line.
+     * @param markerLine  End of the section's content.
+     * @param position    Position after the section's content.
+     * @param sd          Section data.
+     * @param state       Layout state.
+     * @return Line to which content has been filled.
+     */
+    private int fillFooterToEnd(int leadingEdge, int markerLine, int position, SectionData sd,
+            LayoutState state) {
+        if (markerLine >= leadingEdge || position >= state.getRecyclerState().getItemCount()
+                || isSectionCollapsed(sd.firstPosition)) {
+            return markerLine;
+        }
+
+        LayoutState.View footer = state.getView(position);
+        LayoutParams params = footer.getLayoutParams();
+        if (!params.isFooter || params.getTestedFirstPosition() != sd.firstPosition) {
+            state.cacheView(position, footer.view);
+            return markerLine;
         }
 
-        return binarySearchForLastPosition(mid + 1, max, sfp);
+        measureFooter(footer.view);
+        final int bottom = markerLine + getDecoratedMeasuredHeight(footer.view);
+        layoutFooter(footer.view, markerLine, bottom);
+        addView(footer.view);
+        state.decacheView(position);
+        return bottom;
     }
 
     /**
-     * Fill out the next section as far as possible. The marker line is used as a start line to
-     * position content from. If necessary, room for headers is given before laying out the section
-     * content. However, headers are always added to an index after the section content.
+     * Fill out the following sections as far as possible. The marker line is used as a start line
+     * to position content from. If necessary, room for headers is given before laying out the
+     * section content. However, headers are always added to an index after the section content.
+     *
+     * <p>Sections are filled one after another in a loop, so a run of many small sections costs
+     * no more stack than one.</p>
      *
      * @param leadingEdge Line to fill up to. Content will not be wholly beyond this line.
      * @param markerLine  Start line to begin placing content at.
@@ -718,46 +1558,69 @@ public class LayoutManager extends RecyclerView.LayoutManager {
      * @return Line to which content has been filled.
      */
     private int fillNextSectionToEnd(int leadingEdge, int markerLine, LayoutState state) {
-        if (markerLine >= leadingEdge) {
-            return markerLine;
-        }
+        final int itemCount = state.getRecyclerState().getItemCount();
+        int lastPosition = getPosition(getAnchorAtEnd());
+        while (markerLine < leadingEdge) {
+            int anchorPosition = nextVisiblePosition(lastPosition + 1);
 
-        View last = getAnchorAtEnd();
-        int anchorPosition = getPosition(last) + 1;
+            if (anchorPosition >= itemCount) {
+                break;
+            }
 
-        if (anchorPosition >= state.getRecyclerState().getItemCount()) {
-            return markerLine;
-        }
+            LayoutState.View header = state.getView(anchorPosition);
+            final boolean hasHeader = header.getLayoutParams().isHeader;
+            // A section coming on screen can bring more views of a type than the pool holds.
+            mPoolSizesInvalid = true;
+            if (hasHeader) {
+                // Measure before the section data is taken, so it is only made once.
+                measureHeader(header.view);
+            }
+            SectionData sd = new SectionData(this, header.view);
+            if (hasHeader) {
+                markerLine = layoutHeaderTowardsEnd(header.view, markerLine, sd, state);
+                anchorPosition += 1;
+            } else {
+                state.cacheView(anchorPosition, header.view);
+            }
 
-        LayoutState.View header = state.getView(anchorPosition);
-        SectionData sd = new SectionData(this, header.view);
-        if (sd.hasHeader) {
-            measureHeader(header.view);
-            sd = new SectionData(this, header.view);
-            markerLine = layoutHeaderTowardsEnd(header.view, markerLine, sd, state);
-            anchorPosition += 1;
-        } else {
-            state.cacheView(anchorPosition, header.view);
-        }
+            if (anchorPosition < itemCount && !isSectionCollapsed(sd.firstPosition)) {
+                SectionLayoutManager slm = getSlm(sd);
+                // The section is filled from its top, after its header if it has one.
+                state.markerAtContentTop = true;
+                markerLine = slm.fillToEnd(leadingEdge, markerLine, anchorPosition, sd, state);
+                state.markerAtContentTop = false;
+                markerLine = fillFooterToEnd(leadingEdge, markerLine,
+                        getPositionAfterContent(sd.firstPosition, anchorPosition), sd, state);
+            }
 
-        if (anchorPosition < state.getRecyclerState().getItemCount()) {
-            SectionLayoutManager slm = getSlm(sd);
-            markerLine = slm.fillToEnd(leadingEdge, markerLine, anchorPosition, sd, state);
-        }
+            // Carry the section's last position on to the next, rather than finding the end
+            // anchor again. The header has not been added yet, so the last child is the
+            // section's last content if any was filled.
+            lastPosition = sd.firstPosition;
+            final int childCount = getChildCount();
+            if (childCount > 0) {
+                View lastChild = getChildAt(childCount - 1);
+                if (((LayoutParams) lastChild.getLayoutParams()).getTestedFirstPosition()
+                        == sd.firstPosition) {
+                    lastPosition = getPosition(lastChild);
+                }
+            }
 
-        if (sd.hasHeader) {
-            addView(header.view);
-            if (header.wasCached) {
-                state.decacheView(sd.firstPosition);
+            if (hasHeader) {
+                addView(header.view);
+                if (header.wasCached) {
+                    state.decacheView(sd.firstPosition);
+                }
+                markerLine = Math.max(getDecoratedBottom(header.view), markerLine);
             }
-            markerLine = Math.max(getDecoratedBottom(header.view), markerLine);
         }
 
-        return fillNextSectionToEnd(leadingEdge, markerLine, state);
+        return markerLine;
     }
 
     /**
-     * Fill the next section towards the start edge.
+     * Fill the preceding sections towards the start edge. Sections are filled one after another
+     * in a loop, the same as when filling towards the end.
      *
      * @param leadingEdge Line to fill up to. Content will not be wholly beyond this line.
      * @param markerLine  Start line to begin placing content at.
@@ -775,54 +1638,83 @@ public class LayoutManager extends RecyclerView.LayoutManager {
                 Direction.START);
         int anchorPosition;
         if (first != null) {
-            anchorPosition = getPosition(first) - 1;
+            anchorPosition = previousVisiblePosition(getPosition(first) - 1);
         } else {
-            anchorPosition = getPosition(preAnchor) - 1;
+            anchorPosition = previousVisiblePosition(getPosition(preAnchor) - 1);
         }
 
-        if (anchorPosition < 0) {
-            return markerLine;
-        }
+        return fillSectionsToStart(leadingEdge, markerLine, anchorPosition, state);
+    }
+
+    /**
+     * Fill sections towards the start, from the section holding the anchor position.
+     *
+     * @param leadingEdge    Line to fill up to. Content will not be wholly beyond this line.
+     * @param markerLine     Line to lay out the anchor position's bottom at.
+     * @param anchorPosition Last position to lay out, not hidden inside a collapsed section.
+     * @param state          Layout state.
+     * @return Line content was filled up to.
+     */
+    private int fillSectionsToStart(int leadingEdge, int markerLine, int anchorPosition,
+            LayoutState state) {
+        while (markerLine >= leadingEdge && anchorPosition >= 0) {
+            LayoutState.View anchor = state.getView(anchorPosition);
+            LayoutParams anchorParams = anchor.getLayoutParams();
+            mPoolSizesInvalid = true;
 
-        LayoutState.View anchor = state.getView(anchorPosition);
-        LayoutParams anchorParams = anchor.getLayoutParams();
+            int sfp = anchorParams.getTestedFirstPosition();
 
-        int sfp = anchorParams.getTestedFirstPosition();
+            // Setup section data.
+            View header = getHeaderOrFirstViewForSection(sfp, Direction.START, state);
+            if (((LayoutParams) header.getLayoutParams()).isHeader) {
+                measureHeader(header);
+            }
+            SectionData sd = new SectionData(this, header);
+
+            // Attach the footer first, so content filled in before it is added ahead of it.
+            int sectionBottom = markerLine;
+            if (anchorParams.isFooter && !isSectionCollapsed(sd.firstPosition)) {
+                measureFooter(anchor.view);
+                final int top = markerLine - getDecoratedMeasuredHeight(anchor.view);
+                layoutFooter(anchor.view, top, markerLine);
+                addView(anchor.view, 0);
+                state.decacheView(anchorPosition);
+                markerLine = top;
+                anchorPosition -= 1;
+            } else {
+                state.cacheView(anchorPosition, anchor.view);
+            }
 
-        // Setup section data.
-        View header = getHeaderOrFirstViewForSection(sfp, Direction.START, state);
-        SectionData sd = new SectionData(this, header);
-        if (sd.hasHeader) {
-            measureHeader(header);
-            sd = new SectionData(this, header);
-        }
+            // Fill out section.
+            SectionLayoutManager slm = getSlm(sd);
+            if (anchorPosition >= 0 && !isSectionCollapsed(sd.firstPosition)) {
+                markerLine = slm.fillToStart(leadingEdge, markerLine, anchorPosition, sd, state);
+            }
 
-        // Fill out section.
-        SectionLayoutManager slm = getSlm(sd);
-        int sectionBottom = markerLine;
-        if (anchorPosition >= 0) {
-            markerLine = slm.fillToStart(leadingEdge, markerLine, anchorPosition, sd, state);
-        }
-
-        // Lay out and attach header.
-        if (sd.hasHeader) {
-            int headerOffset = 0;
-            if (!sd.headerParams.isHeaderInline() || sd.headerParams.isHeaderOverlay()) {
-                View firstVisibleView = slm.getFirstVisibleView(sd.firstPosition, true);
-                if (firstVisibleView == null) {
-                    headerOffset = 0;
-                } else {
-                    headerOffset = slm
-                            .computeHeaderOffset(getPosition(firstVisibleView), sd, state);
+            // Lay out and attach header.
+            if (sd.hasHeader) {
+                int headerOffset = 0;
+                if (!sd.headerParams.isHeaderInline() || sd.headerParams.isHeaderOverlay()) {
+                    View firstVisibleView = slm.getFirstVisibleView(sd.firstPosition, true);
+                    if (firstVisibleView == null) {
+                        headerOffset = 0;
+                    } else {
+                        headerOffset = slm
+                                .computeHeaderOffset(getPosition(firstVisibleView), sd, state);
+                    }
                 }
+                markerLine = layoutHeaderTowardsStart(header, leadingEdge, markerLine,
+                        headerOffset, sectionBottom, sd, state);
+
+                attachHeaderForStart(header, leadingEdge, sd, state);
             }
-            markerLine = layoutHeaderTowardsStart(header, leadingEdge, markerLine, headerOffset,
-                    sectionBottom, sd, state);
 
-            attachHeaderForStart(header, leadingEdge, sd, state);
+            // Content only stops short of the section's first position at the leading edge, so
+            // the next section to fill is the one before this one.
+            anchorPosition = previousVisiblePosition(sd.firstPosition - 1);
         }
 
-        return fillNextSectionToStart(leadingEdge, markerLine, state);
+        return markerLine;
     }
 
     /**
@@ -833,7 +1725,17 @@ public class LayoutManager extends RecyclerView.LayoutManager {
      *                    is before the leading edge then the end of the data set has been reached.
      */
     private int fillToEnd(int leadingEdge, LayoutState state) {
-        final View anchor = getAnchorAtEnd();
+        final int anchorIndex = getAnchorIndexAtEnd();
+        final View anchor = getChildAt(anchorIndex);
+
+        if (anchorIndex + 1 < getChildCount()) {
+            View next = getChildAt(anchorIndex + 1);
+            if (((LayoutParams) next.getLayoutParams()).isFooter) {
+                // The footer is stuck to the end edge ahead of the content. Take it out while the
+                // rest of the content is filled in, it is attached again after scrolling.
+                detachAndScrapView(next, state.recycler);
+            }
+        }
 
         LayoutParams anchorParams = (LayoutParams) anchor.getLayoutParams();
         final int sfp = anchorParams.getTestedFirstPosition();
@@ -841,7 +1743,22 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         final SectionData sd = new SectionData(this, first);
 
         final SectionLayoutManager slm = getSlm(sd);
-        int markerLine = slm.finishFillToEnd(leadingEdge, anchor, sd, state);
+        int markerLine;
+        if (anchorParams.isFooter) {
+            // The section is complete, so put the footer back in its place after the content.
+            final View footer = anchor;
+            int top = getDecoratedTop(footer);
+            top = slm.getLowestEdge(sfp, anchorIndex - 1, top);
+            markerLine = top + getDecoratedMeasuredHeight(footer);
+            layoutFooter(footer, top, markerLine);
+        } else if (isSectionCollapsed(sd.firstPosition)) {
+            markerLine = slm.getLowestEdge(sd.firstPosition, getChildCount() - 1,
+                    getDecoratedBottom(anchor));
+        } else {
+            markerLine = slm.finishFillToEnd(leadingEdge, anchor, sd, state);
+            markerLine = fillFooterToEnd(leadingEdge, markerLine,
+                    getPositionAfterContent(sfp, getPosition(anchor) + 1), sd, state);
+        }
 
         View header = findAttachedHeaderForSectionFromEnd(sd.firstPosition);
         markerLine = updateHeaderForEnd(header, markerLine);
@@ -1003,12 +1920,272 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return null;
     }
 
+    /**
+     * Find the current position of the item with the given stable id. The search works outwards
+     * from the item's old position, so it is quick when only a few items have been added or
+     * removed nearby, such as when a page of items is prepended.
+     *
+     * @param id        Stable id of the anchor item, or {@link RecyclerView#NO_ID}.
+     * @param position  Position the item was last known to be at.
+     * @param itemCount Number of items in the data set.
+     * @return Current position of the item, or the given position if it could not be found.
+     */
+    private int findPositionForAnchorId(long id, int position, int itemCount) {
+        if (id == RecyclerView.NO_ID || mAdapter == null || !mAdapter.hasStableIds()) {
+            return position;
+        }
+
+        itemCount = Math.min(itemCount, mAdapter.getItemCount());
+        for (int offset = 0; position + offset < itemCount || position - offset >= 0; offset++) {
+            final int after = position + offset;
+            if (after < itemCount && mAdapter.getItemId(after) == id) {
+                return after;
+            }
+            final int before = position - offset;
+            if (offset > 0 && before >= 0 && before < itemCount
+                    && mAdapter.getItemId(before) == id) {
+                return before;
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Check if the end of the data is close enough to call the approaching end listener. The
+     * listener is posted rather than called directly so it can change the adapter.
+     */
+    private void checkApproachingEnd(RecyclerView.State state) {
+        final int itemCount = state.getItemCount();
+        if (mApproachingEndListener == null || getChildCount() == 0
+                || itemCount == mApproachingEndItemCount) {
+            return;
+        }
+
+        final View last = getAnchorAtEnd();
+        final int contentTop = getDecoratedTop(getChildAt(0));
+        final int contentBottom = getDecoratedBottom(last);
+        final int averageHeight = Math.max(0, contentBottom - contentTop) / getChildCount();
+
+        // Only count as far as either threshold needs to be decided.
+        int limit = mApproachingEndItemThreshold + 1;
+        if (averageHeight > 0) {
+            limit = Math.max(limit, mApproachingEndPixelThreshold / averageHeight + 1);
+        }
+        final int itemsLeft = countVisiblePositionsAfter(getPosition(last), itemCount, limit);
+        boolean approaching = itemsLeft <= mApproachingEndItemThreshold;
+        if (!approaching) {
+            // Estimate the remaining content from the average height of the attached children.
+            final int bottomEdge = getClipToPadding() ? getHeight() - getPaddingBottom()
+                    : getHeight();
+            final int pixelsLeft = contentBottom - bottomEdge + itemsLeft * averageHeight;
+            approaching = pixelsLeft <= mApproachingEndPixelThreshold;
+        }
+
+        if (approaching) {
+            mApproachingEndItemCount = itemCount;
+            postOnAnimation(mApproachingEndRunnable);
+        }
+    }
+
+    /**
+     * Count the positions after the given one that are not hidden inside collapsed sections.
+     *
+     * @param position  Adapter position to count from.
+     * @param itemCount Item count.
+     * @param limit     Count to stop at.
+     * @return Number of visible positions after the position, up to the limit.
+     */
+    private int countVisiblePositionsAfter(int position, int itemCount, int limit) {
+        int count = 0;
+        position = nextVisiblePosition(position + 1);
+        while (count < limit && position < itemCount) {
+            count += 1;
+            position = nextVisiblePosition(position + 1);
+        }
+        return count;
+    }
+
+    private static float computeFlingDeceleration(Context context) {
+        // Gravity in inches per second squared at the screen's pixel density, as the platform's
+        // scroller does it.
+        final float ppi = context.getResources().getDisplayMetrics().density * 160.0f;
+        return 9.80665f * 39.37f * ppi * 0.84f;
+    }
+
+    /**
+     * Estimate how far a fling goes from a velocity, using the platform scroller's fling curve.
+     *
+     * @param velocity Speed in pixels per second.
+     * @return Distance in pixels.
+     */
+    private double getFlingDistance(float velocity) {
+        final double l = Math.log(FLING_INFLEXION * velocity
+                / (SCROLL_FRICTION * mFlingDeceleration));
+        return SCROLL_FRICTION * mFlingDeceleration
+                * Math.exp(FLING_DECELERATION_RATE / (FLING_DECELERATION_RATE - 1) * l);
+    }
+
+    /**
+     * Bind views again in full if they were bound lightly during a fling that has now settled.
+     *
+     * @param recycler Recycler to bind with.
+     */
+    private void rebindLightweightViews(RecyclerView.Recycler recycler) {
+        if (!mLightweightBindsPending || mScrollState != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+        mLightweightBindsPending = false;
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            if (params.isBoundLightly()) {
+                // Binding again clears the flag.
+                recycler.bindViewToPosition(child, getPosition(child));
+            }
+        }
+    }
+
+    private void trackScrollVelocity(int dy) {
+        final long now = System.nanoTime();
+        final long elapsed = now - mLastScrollNs;
+        if (mLastScrollNs == 0 || elapsed <= 0 || elapsed > VELOCITY_TIMEOUT_NS) {
+            mScrollVelocity = 0;
+        } else {
+            final float velocity = dy * 1000000000f / elapsed;
+            mScrollVelocity = mScrollVelocity == 0 ? velocity : (mScrollVelocity + velocity) / 2;
+        }
+        mLastScrollNs = now;
+    }
+
+    /**
+     * Check a view fetched from the recycler for a lightweight bind. A view the adapter bound
+     * lightly is bound again in full when it is next fetched outside of a fast fling. Views
+     * fetched without being bound keep the flag from their last bind, so a view that was bound in
+     * full is not bound again.
+     *
+     * @param child    Fetched view.
+     * @param position Adapter position.
+     * @param recycler Recycler to bind with.
+     */
+    void updateLightweightBind(View child, int position, RecyclerView.Recycler recycler) {
+        if (!(child.getLayoutParams() instanceof LayoutParams)) {
+            return;
+        }
+        LayoutParams params = (LayoutParams) child.getLayoutParams();
+        if (!params.isBoundLightly()) {
+            return;
+        }
+        if (isLightweightBind()) {
+            mLightweightBindsPending = true;
+        } else {
+            // Binding again clears the flag.
+            recycler.bindViewToPosition(child, position);
+        }
+    }
+
+    /**
+     * Note the type of a view fetched from the recycler, so the pool is sized again at the end of
+     * a scroll frame if the type has not been on screen before.
+     *
+     * @param child View fetched from the recycler.
+     */
+    void onViewFetched(View child) {
+        if (!mPoolSizing) {
+            return;
+        }
+        final int viewType = getItemViewType(child);
+        if (!mPoolViewTypes.get(viewType)) {
+            mPoolViewTypes.put(viewType, true);
+            mPoolSizesInvalid = true;
+        }
+    }
+
+    private void growPool(int viewType, int size) {
+        if (size <= mPoolSizes.get(viewType, DEFAULT_POOL_SIZE)) {
+            return;
+        }
+        mPoolSizes.put(viewType, size);
+        mRecyclerView.getRecycledViewPool().setMaxRecycledViews(viewType, size);
+    }
+
+    private void schedulePrewarm() {
+        if (mPrewarmScheduled || mPrewarmCounts.size() == 0) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(mPrewarmHandler);
+        mPrewarmScheduled = true;
+    }
+
+    /**
+     * Grow the recycled view pool to hold the views of each type on screen, plus the widest row
+     * of them. Views in a row are consecutive children with the same top edge.
+     */
+    private void updatePoolSizes() {
+        mPoolSizesInvalid = false;
+        if (!mPoolSizing || mRecyclerView == null) {
+            return;
+        }
+
+        mPoolCounts.clear();
+        mPoolRows.clear();
+        int rowType = 0;
+        int rowTop = 0;
+        int rowLength = 0;
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            final int viewType = getItemViewType(child);
+            final int top = getDecoratedTop(child);
+            if (rowLength > 0 && viewType == rowType && top == rowTop) {
+                rowLength += 1;
+            } else {
+                rowType = viewType;
+                rowTop = top;
+                rowLength = 1;
+            }
+            mPoolCounts.put(viewType, mPoolCounts.get(viewType) + 1);
+            mPoolRows.put(viewType, Math.max(mPoolRows.get(viewType), rowLength));
+        }
+
+        for (int i = 0; i < mPoolCounts.size(); i++) {
+            final int viewType = mPoolCounts.keyAt(i);
+            growPool(viewType, mPoolCounts.valueAt(i) + mPoolRows.get(viewType));
+        }
+    }
+
+    /**
+     * Tell listeners the outcome of a layout pass or scroll.
+     */
+    private void dispatchLayoutCallbacks(RecyclerView.State state) {
+        mSectionBoundsInvalid = true;
+        checkApproachingEnd(state);
+
+        if (mVisibleRangeListeners.isEmpty()) {
+            return;
+        }
+
+        mVisibleRange.update(this);
+        for (int i = 0; i < mVisibleRangeListeners.size(); i++) {
+            mVisibleRangeListeners.get(i).onVisibleRangeChanged(mVisibleRange);
+        }
+    }
+
     private int findLastIndexForSection(int sfp) {
         return binarySearchForLastPosition(0, getChildCount() - 1, sfp);
     }
 
-    private void fixOverscroll(int bottomLine, LayoutState state) {
-        if (!isOverscrolled(state)) {
+    /**
+     * Correct a layout that left a gap at the start or end edge, from where the fill started and
+     * ended rather than by looking through the children again.
+     *
+     * @param topLine    Top of the first item if the layout started from it, otherwise {@link
+     *                   #NO_TOP_LINE}.
+     * @param bottomLine Line the fill reached towards the end.
+     * @param state      Layout state.
+     */
+    private void fixOverscroll(int topLine, int bottomLine, LayoutState state) {
+        if (getChildCount() == 0 || !isOverscrolled(topLine, bottomLine)) {
             return;
         }
 
@@ -1017,11 +2194,11 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         offsetChildrenVertical(delta);
 
         // Fill back towards the top.
-        int topLine = fillToStart(0, state);
+        final int filledLine = fillToStart(0, state);
 
-        if (topLine > getPaddingTop()) {
+        if (filledLine > getPaddingTop()) {
             // Not enough content to fill all the way back up so we shunt it back up.
-            offsetChildrenVertical(getPaddingTop() - topLine);
+            offsetChildrenVertical(getPaddingTop() - filledLine);
         }
     }
 
@@ -1031,20 +2208,34 @@ public class LayoutManager extends RecyclerView.LayoutManager {
      * @return Non-header view closest to the end edge.
      */
     private View getAnchorAtEnd() {
-        if (getChildCount() == 1) {
-            return getChildAt(0);
+        return getChildAt(getAnchorIndexAtEnd());
+    }
+
+    /**
+     * Find the index of the anchor to fill to end from. A footer stuck to the end edge ahead of
+     * the rest of its section's content is skipped, since the content before it is where the
+     * section carries on from.
+     *
+     * @return Index of the non-header view closest to the end edge.
+     */
+    private int getAnchorIndexAtEnd() {
+        int index = getChildCount() - 1;
+        if (index == 0) {
+            return 0;
         }
-        View candidate = getChildAt(getChildCount() - 1);
-        LayoutParams candidateParams = (LayoutParams) candidate.getLayoutParams();
-        if (candidateParams.isHeader) {
+        LayoutParams params = (LayoutParams) getChildAt(index).getLayoutParams();
+        if (params.isHeader) {
             // Try one above.
-            View check = getChildAt(getChildCount() - 2);
-            LayoutParams checkParams = (LayoutParams) check.getLayoutParams();
-            if (checkParams.getTestedFirstPosition() == candidateParams.getTestedFirstPosition()) {
-                candidate = check;
+            LayoutParams checkParams = (LayoutParams) getChildAt(index - 1).getLayoutParams();
+            if (checkParams.getTestedFirstPosition() == params.getTestedFirstPosition()) {
+                index -= 1;
+                params = checkParams;
             }
         }
-        return candidate;
+        if (params.isFooter && isStuckFooter(index)) {
+            index -= 1;
+        }
+        return index;
     }
 
     /**
@@ -1118,6 +2309,22 @@ public class LayoutManager extends RecyclerView.LayoutManager {
 
     }
 
+    /**
+     * Find the child to anchor a layout on when stacking from the end.
+     *
+     * @return Last content view, or null if there are no children.
+     */
+    private View getEndAnchorChild() {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            if (!params.isHeader && !params.isFooter) {
+                return child;
+            }
+        }
+        return getChildCount() == 0 ? null : getChildAt(getChildCount() - 1);
+    }
+
     private int getDirectionToPosition(int targetPosition) {
         SectionData sd = new SectionData(this, getChildAt(0));
         final View startSectionFirstView = getSlm(sd)
@@ -1125,6 +2332,19 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return targetPosition < getPosition(startSectionFirstView) ? -1 : 1;
     }
 
+    /**
+     * @param position Adapter position.
+     * @return Number of items before the position hidden by collapsed sections.
+     */
+    private int getHiddenCountBefore(int position) {
+        SectionIndex index = getSectionIndex();
+        return index == null ? 0 : index.getHiddenCountBefore(position);
+    }
+
+    private int getVisibleItemCount(RecyclerView.State state) {
+        return Math.max(1, state.getItemCount() - getHiddenCountBefore(state.getItemCount()));
+    }
+
     private float getFractionOfContentAbove(RecyclerView.State state, boolean ignorePosition) {
         float fractionOffscreen = 0;
 
@@ -1249,6 +2469,28 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return view;
     }
 
+    /**
+     * Find the position after the section content attached at the end.
+     *
+     * @param sfp             Section first position.
+     * @param defaultPosition Position to use if it is after the attached content.
+     * @return Position after the last attached content of the section.
+     */
+    private int getPositionAfterContent(int sfp, int defaultPosition) {
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            if (params.getTestedFirstPosition() != sfp) {
+                break;
+            }
+            if (params.isHeader || params.isFooter) {
+                continue;
+            }
+            return Math.max(defaultPosition, getPosition(child) + 1);
+        }
+        return defaultPosition;
+    }
+
     private SectionLayoutManager getSLM(int kind, String key) {
         if (kind == SECTION_MANAGER_CUSTOM) {
             return mSlms.get(key);
@@ -1256,6 +2498,10 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             return mLinearSlm;
         } else if (kind == SECTION_MANAGER_GRID) {
             return mGridSlm;
+        } else if (kind == SECTION_MANAGER_FLOW) {
+            return mFlowSlm;
+        } else if (kind == SECTION_MANAGER_TABLE) {
+            return mTableSlm;
         } else {
             throw new NotYetImplementedSlmException(kind);
         }
@@ -1268,6 +2514,10 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             return mLinearSlm;
         } else if (params.sectionManagerKind == SECTION_MANAGER_GRID) {
             return mGridSlm;
+        } else if (params.sectionManagerKind == SECTION_MANAGER_FLOW) {
+            return mFlowSlm;
+        } else if (params.sectionManagerKind == SECTION_MANAGER_TABLE) {
+            return mTableSlm;
         } else {
             throw new NotYetImplementedSlmException(params.sectionManagerKind);
         }
@@ -1284,6 +2534,10 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             slm = mLinearSlm;
         } else if (sd.headerParams.sectionManagerKind == SECTION_MANAGER_GRID) {
             slm = mGridSlm;
+        } else if (sd.headerParams.sectionManagerKind == SECTION_MANAGER_FLOW) {
+            slm = mFlowSlm;
+        } else if (sd.headerParams.sectionManagerKind == SECTION_MANAGER_TABLE) {
+            slm = mTableSlm;
         } else {
             throw new NotYetImplementedSlmException(sd.headerParams.sectionManagerKind);
         }
@@ -1291,34 +2545,83 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return slm.init(sd);
     }
 
-    private boolean isOverscrolled(LayoutState state) {
-        final int itemCount = state.getRecyclerState().getItemCount();
-
-        if (getChildCount() == 0) {
+    /**
+     * Check if the footer at an index is stuck to the end edge ahead of the rest of its section's
+     * content. The positions between the footer and the content before it are not attached.
+     *
+     * @param index Index of an attached footer.
+     * @return True if the footer is not directly after its section's attached content.
+     */
+    private boolean isStuckFooter(int index) {
+        if (index == 0) {
             return false;
         }
+        final View footer = getChildAt(index);
+        final View content = getChildAt(index - 1);
+        LayoutParams contentParams = (LayoutParams) content.getLayoutParams();
+        return !contentParams.isHeader && contentParams.getTestedFirstPosition()
+                == ((LayoutParams) footer.getLayoutParams()).getTestedFirstPosition()
+                && getPosition(content) != getPosition(footer) - 1;
+    }
+
+    private boolean isOverscrolled(int topLine, int bottomLine) {
+        if (topLine != NO_TOP_LINE && topLine >= getPaddingTop()) {
+            return topLine > getPaddingTop();
+        }
 
-        final View firstVisibleView = findFirstVisibleItem();
-        final boolean firstVisibleIsFirstItem = getPosition(firstVisibleView) == 0;
-        final boolean firstVisibleAfterStart = getDecoratedTop(firstVisibleView) > getPaddingTop();
-        final boolean firstVisibleAtStart = getDecoratedTop(firstVisibleView) == getPaddingTop();
+        // The fill only stops short of the end edge when it runs out of items.
+        return bottomLine < getHeight() - getPaddingBottom();
+    }
 
-        if (firstVisibleIsFirstItem && firstVisibleAfterStart) {
-            return true;
-        } else if (firstVisibleIsFirstItem && firstVisibleAtStart) {
+    /**
+     * Check if the only change since the last layout is the height of the recycler view, as when
+     * the soft keyboard is shown or hidden. In that case the attached children can be kept.
+     *
+     * @param state Recycler view state.
+     * @return True if only the height has changed.
+     */
+    private boolean isHeightOnlyChange(RecyclerView.State state) {
+        if (mFullLayoutRequired || mRequestPosition != NO_POSITION_REQUEST || getChildCount() == 0
+                || getWidth() != mLastWidth || getHeight() == mLastHeight
+                || state.isPreLayout() || state.didStructureChange()) {
             return false;
         }
 
-        final View lastVisibleView = findLastVisibleItem();
-        final boolean lastVisibleIsLastItem = getPosition(lastVisibleView) == itemCount - 1;
-        final boolean lastVisibleBeforeEnd =
-                getDecoratedBottom(lastVisibleView) < getHeight() - getPaddingBottom();
+        for (int i = 0; i < getChildCount(); i++) {
+            if (getChildAt(i).isLayoutRequested()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        if (lastVisibleIsLastItem && lastVisibleBeforeEnd) {
-            return true;
+    /**
+     * Update the layout for a change in height only. Attached children stay where they are and
+     * content is filled or trimmed at the end edge.
+     */
+    private void layoutForHeightChange(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        LayoutState layoutState = new LayoutState(this, recycler, state);
+        releaseStackedHeaders(layoutState);
+        final int height = getHeight();
+        if (mStackFromEnd) {
+            // Keep the end in place, as when a keyboard opens or closes under a chat.
+            offsetChildrenVertical(height - mLastHeight);
+            if (height > mLastHeight) {
+                fillToStart(0, layoutState);
+            } else {
+                trimTail(Direction.START, layoutState);
+            }
+        } else if (height > mLastHeight) {
+            int bottomLine = fillToEnd(height, layoutState);
+            fixOverscroll(NO_TOP_LINE, bottomLine, layoutState);
+        } else {
+            trimTail(Direction.END, layoutState);
         }
+        updateStickyFooter(layoutState);
+        updateStackedHeaders(layoutState);
+        layoutState.recycleCache();
 
-        return false;
+        mLastHeight = height;
     }
 
     /**
@@ -1331,6 +2634,16 @@ public class LayoutManager extends RecyclerView.LayoutManager {
     private int layoutChildren(int anchorPosition, int borderLine, LayoutState state) {
         final int height = getHeight();
 
+        // Content in collapsed sections is skipped, so anchor on the header instead.
+        int visiblePosition = previousVisiblePosition(anchorPosition);
+        if (visiblePosition == -1) {
+            visiblePosition = nextVisiblePosition(anchorPosition);
+            if (visiblePosition >= state.getRecyclerState().getItemCount()) {
+                return borderLine;
+            }
+        }
+        anchorPosition = visiblePosition;
+
         final LayoutState.View anchor = state.getView(anchorPosition);
         state.cacheView(anchorPosition, anchor.view);
 
@@ -1351,7 +2664,14 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         }
 
         // Layout first section to end.
-        markerLine = slm.fillToEnd(height, markerLine, contentPosition, sd, state);
+        if (!isSectionCollapsed(sd.firstPosition)) {
+            // The marker line is the content top only if the header was just laid out above it.
+            state.markerAtContentTop = contentPosition != anchorPosition;
+            markerLine = slm.fillToEnd(height, markerLine, contentPosition, sd, state);
+            state.markerAtContentTop = false;
+            markerLine = fillFooterToEnd(height, markerLine,
+                    getPositionAfterContent(sd.firstPosition, contentPosition), sd, state);
+        }
 
         if (sd.hasHeader && anchorPosition != sd.firstPosition) {
             int offset = slm.computeHeaderOffset(contentPosition, sd, state);
@@ -1371,6 +2691,47 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return markerLine;
     }
 
+    /**
+     * Lay out a footer across the full width.
+     *
+     * @param footer Footer to lay out.
+     * @param top    Decorated top edge.
+     * @param bottom Decorated bottom edge.
+     */
+    private void layoutFooter(View footer, int top, int bottom) {
+        final int left = getPaddingLeft();
+        layoutHeader(footer, left, top, left + getDecoratedMeasuredWidth(footer), bottom);
+    }
+
+    /**
+     * Lay out a header. Sticky headers are repositioned on every scroll, but usually only move, so
+     * in that case the header is just offset rather than laid out again. That is only done when
+     * the header's size, with its decoration insets worked out again, is unchanged. Sticky footers
+     * are positioned the same way.
+     *
+     * @param header Header to lay out.
+     * @param left   Decorated left edge.
+     * @param top    Decorated top edge.
+     * @param right  Decorated right edge.
+     * @param bottom Decorated bottom edge.
+     */
+    private void layoutHeader(View header, int left, int top, int right, int bottom) {
+        // Item decorations may have changed since the header was measured.
+        calculateItemDecorationsForChild(header, mDecorInsets);
+        if (!header.isLayoutRequested()
+                && header.getLeft() == left + mDecorInsets.left
+                && header.getRight() == right - mDecorInsets.right
+                && header.getHeight() == bottom - top - mDecorInsets.top - mDecorInsets.bottom) {
+            final int delta = top + mDecorInsets.top - header.getTop();
+            if (delta != 0) {
+                header.offsetTopAndBottom(delta);
+            }
+            return;
+        }
+
+        layoutDecorated(header, left, top, right, bottom);
+    }
+
     /**
      * Layout header for fill to end.
      *
@@ -1396,7 +2757,7 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             r.bottom = r.top + sd.headerHeight;
         }
 
-        layoutDecorated(header, r.left, r.top, r.right, r.bottom);
+        layoutHeader(header, r.left, r.top, r.right, r.bottom);
 
         return markerLine;
     }
@@ -1440,7 +2801,7 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             r.top = r.bottom - sd.headerHeight;
         }
 
-        layoutDecorated(header, r.left, r.top, r.right, r.bottom);
+        layoutHeader(header, r.left, r.top, r.right, r.bottom);
 
         return Math.min(r.top, markerLine);
     }
@@ -1493,7 +2854,56 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             r.right = r.left + sd.headerWidth;
         }
 
-        return r;
+        return r;
+    }
+
+    /**
+     * Lay out views from the end, with the bottom of the anchor at the border line. Content is
+     * filled towards the start from the anchor, then any space left below it is filled. Content
+     * that still stops short of the end edge is moved down against it, as when items were removed
+     * from the end.
+     *
+     * @param anchorPosition Position to lay out from.
+     * @param borderLine     Line to lay out the anchor's bottom at.
+     * @param state          Layout state.
+     */
+    private void layoutChildrenFromEnd(int anchorPosition, int borderLine, LayoutState state) {
+        // Content in collapsed sections is skipped, so anchor on the header instead.
+        final int visiblePosition = previousVisiblePosition(anchorPosition);
+        if (visiblePosition == -1) {
+            return;
+        }
+
+        fillSectionsToStart(0, borderLine, visiblePosition, state);
+        if (getChildCount() == 0) {
+            return;
+        }
+
+        final int bottomLine = fillToEnd(getHeight(), state);
+        final int endLine = getHeight() - getPaddingBottom();
+        if (bottomLine < endLine) {
+            offsetChildrenVertical(endLine - bottomLine);
+            fillToStart(0, state);
+        }
+    }
+
+    /**
+     * Move content that stops short of the end edge down against it, then fill the space above.
+     * Any gap left at the start edge is kept.
+     *
+     * @param bottomLine Line the fill reached towards the end.
+     * @param state      Layout state.
+     */
+    private void stackToEnd(int bottomLine, LayoutState state) {
+        if (getChildCount() == 0) {
+            return;
+        }
+
+        final int endLine = getHeight() - getPaddingBottom();
+        if (bottomLine < endLine) {
+            offsetChildrenVertical(endLine - bottomLine);
+        }
+        fillToStart(0, state);
     }
 
     /**
@@ -1508,7 +2918,8 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             if (getDecoratedTop(child) >= height) {
                 removeAndRecycleView(child, state.recycler);
             } else {
-                if (!((LayoutParams) child.getLayoutParams()).isHeader) {
+                LayoutParams params = (LayoutParams) child.getLayoutParams();
+                if (!params.isHeader && !params.isFooter) {
                     break;
                 }
             }
@@ -1599,9 +3010,12 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             return markerLine;
         }
 
-        // Just keep headers at the end.
-        detachView(header);
-        attachView(header, -1);
+        // Just keep headers at the end. Reattaching invalidates the header, so only do it when
+        // something has been added after it.
+        if (getChildAt(getChildCount() - 1) != header) {
+            detachView(header);
+            attachView(header, -1);
+        }
 
         return Math.max(markerLine, getDecoratedBottom(header));
     }
@@ -1664,6 +3078,424 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         return markerLine;
     }
 
+    /**
+     * Stack the sticky headers of the sections that the section at the start edge is nested in.
+     * Each header sticks below the one it is nested in and is pushed up at the end of its
+     * section's descendants. The start section's own sticky header is moved below the stack.
+     * Nesting is only known when the adapter is a {@link SectionedAdapter}, and headers are only
+     * stacked when enabled with {@link #setStackedHeadersEnabled(boolean)}.
+     *
+     * @param state Layout state.
+     */
+    private void updateStackedHeaders(LayoutState state) {
+        final SectionIndex index = state.sectionIndex;
+        if (!mStackedHeadersEnabled || index == null || getChildCount() == 0
+                || index.getItemCount() != state.getRecyclerState().getItemCount()) {
+            return;
+        }
+
+        final int sfp = ((LayoutParams) getChildAt(0).getLayoutParams()).getTestedFirstPosition();
+        final int section = index.getSectionForPosition(sfp);
+        final int depth = index.getSectionDepth(section);
+        if (depth == 0) {
+            return;
+        }
+
+        // Ancestors, outermost first.
+        if (mStackAncestors.length < depth) {
+            mStackAncestors = new int[depth];
+        }
+        final int[] ancestors = mStackAncestors;
+        int count = 0;
+        for (int a = index.getParentSection(section); a != -1; a = index.getParentSection(a)) {
+            ancestors[count] = a;
+            count += 1;
+        }
+
+        int stackBottom = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            final int ancestor = ancestors[i];
+            if (!index.hasHeader(ancestor)) {
+                continue;
+            }
+            final int position = index.getFirstPosition(ancestor);
+            View view = findViewByPosition(position);
+            final boolean attached = view != null;
+            if (attached && getDecoratedTop(view) >= stackBottom) {
+                // Still in place, nothing to stack yet.
+                continue;
+            }
+            if (!attached) {
+                LayoutState.View stateView = state.getView(position);
+                view = stateView.view;
+                if (!stateView.getLayoutParams().isHeaderSticky()) {
+                    state.cacheView(position, view);
+                    continue;
+                }
+                state.decacheView(position);
+                measureHeader(view);
+            } else if (!((LayoutParams) view.getLayoutParams()).isHeaderSticky()) {
+                continue;
+            }
+
+            // Push the header up once the content nested in it has gone past.
+            final int height = getDecoratedMeasuredHeight(view);
+            final int subtreeEnd = index.getSubtreeEnd(ancestor);
+            int top = stackBottom;
+            if (subtreeEnd < index.getSectionCount()) {
+                final int endIndex = findFirstIndexFromSection(index.getFirstPosition(subtreeEnd));
+                if (endIndex != -1) {
+                    top = Math.min(top, getDecoratedTop(getChildAt(endIndex)) - height);
+                }
+            }
+
+            StackedHeader stacked = obtainStackedHeader();
+            stacked.view = view;
+            stacked.position = position;
+            stacked.attached = attached;
+            if (attached) {
+                stacked.drawTop = top + view.getTop() - getDecoratedTop(view);
+            } else {
+                final int left = getPaddingLeft();
+                layoutDecorated(view, left, top, left + getDecoratedMeasuredWidth(view),
+                        top + height);
+                stacked.drawTop = view.getTop();
+            }
+            mStackedHeaders.add(stacked);
+            stackBottom = Math.max(stackBottom, top + height);
+        }
+
+        // Keep the start section's own sticky header clear of the stack.
+        View header = findAttachedHeaderForSection(sfp, Direction.START);
+        if (header == null || stackBottom <= getDecoratedTop(header)
+                || !((LayoutParams) header.getLayoutParams()).isHeaderSticky()) {
+            return;
+        }
+        final int slp = findLastIndexForSection(sfp);
+        if (slp == -1) {
+            return;
+        }
+        final int height = getDecoratedMeasuredHeight(header);
+        // The lowest edge does not depend on the section data, so none is made for it.
+        final SectionLayoutManager slm = getSlm((LayoutParams) header.getLayoutParams());
+        final int sectionBottom = slm.getLowestEdge(sfp, slp, getHeight());
+        final int top = Math.min(stackBottom, sectionBottom - height);
+        layoutHeader(header, getDecoratedLeft(header), top, getDecoratedRight(header),
+                top + height);
+    }
+
+    /**
+     * Stick the footer of the section at the end edge to the end edge while the rest of the
+     * section's content is beyond it. The footer is never moved above the section's content. The
+     * footer can only be found before the end of its section is reached when the adapter is a
+     * {@link SectionedAdapter} that reports the section has a footer.
+     *
+     * @param state Layout state.
+     */
+    private void updateStickyFooter(LayoutState state) {
+        if (getChildCount() == 0) {
+            return;
+        }
+
+        final int sfp = ((LayoutParams) getAnchorAtEnd().getLayoutParams())
+                .getTestedFirstPosition();
+        if (isSectionCollapsed(sfp)) {
+            return;
+        }
+
+        // Find the attached footer and the content closest to the end.
+        View footer = null;
+        View content = null;
+        int contentIndex = -1;
+        int firstIndex = getChildCount();
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            LayoutParams params = (LayoutParams) child.getLayoutParams();
+            if (params.getTestedFirstPosition() != sfp) {
+                break;
+            }
+            firstIndex = i;
+            if (params.isFooter) {
+                footer = child;
+            } else if (!params.isHeader && content == null) {
+                content = child;
+                contentIndex = i;
+            }
+        }
+
+        if (footer == null) {
+            SectionIndex index = state.sectionIndex;
+            if (content == null || index == null) {
+                return;
+            }
+            // Only bind the footer to check it is sticky if the section has one.
+            final int footerPosition = index.getFooterPosition(index.getSectionForPosition(sfp));
+            if (footerPosition <= getPosition(content)) {
+                return;
+            }
+
+            LayoutState.View view = state.getView(footerPosition);
+            LayoutParams params = view.getLayoutParams();
+            if (!params.isFooter || !params.isFooterSticky()) {
+                state.cacheView(footerPosition, view.view);
+                return;
+            }
+            measureFooter(view.view);
+            footer = view.view;
+            addView(footer, contentIndex + 1);
+            state.decacheView(footerPosition);
+        } else if (!((LayoutParams) footer.getLayoutParams()).isFooterSticky()) {
+            return;
+        }
+
+        final int footerHeight = getDecoratedMeasuredHeight(footer);
+        final int bottomEdge = getClipToPadding() ? getHeight() - getPaddingBottom() : getHeight();
+        int top;
+        if (content == null) {
+            top = getDecoratedTop(footer);
+        } else {
+            final SectionLayoutManager slm = getSlm(new SectionData(this,
+                    getHeaderOrFirstViewForSection(sfp, Direction.END, state)));
+            if (getPosition(content) == getPosition(footer) - 1) {
+                // The content is complete, so the footer goes no lower than just after it.
+                top = Math.min(slm.getLowestEdge(sfp, contentIndex, getDecoratedBottom(content)),
+                        bottomEdge - footerHeight);
+            } else {
+                top = bottomEdge - footerHeight;
+            }
+            top = Math.max(top, slm.getHighestEdge(sfp, firstIndex, top));
+        }
+        layoutFooter(footer, top, top + footerHeight);
+    }
+
+    /**
+     * Find the first visible position at or after the given position.
+     *
+     * @param position Adapter position.
+     * @return Position not hidden inside a collapsed section.
+     */
+    private int nextVisiblePosition(int position) {
+        SectionIndex index = getSectionIndex();
+        if (index == null || position < 0 || position >= index.getItemCount()) {
+            return position;
+        }
+        return index.getNextVisiblePosition(position);
+    }
+
+    private void notifySlmsItemsChanged() {
+        mLinearSlm.onItemsChanged();
+        mGridSlm.onItemsChanged();
+        mFlowSlm.onItemsChanged();
+        mTableSlm.onItemsChanged();
+        for (SectionLayoutManager slm : mSlms.values()) {
+            slm.onItemsChanged();
+        }
+    }
+
+    private void notifySlmsItemsChanged(int positionStart, int positionEnd) {
+        mLinearSlm.onItemsChanged(positionStart, positionEnd);
+        mGridSlm.onItemsChanged(positionStart, positionEnd);
+        mFlowSlm.onItemsChanged(positionStart, positionEnd);
+        mTableSlm.onItemsChanged(positionStart, positionEnd);
+        for (SectionLayoutManager slm : mSlms.values()) {
+            slm.onItemsChanged(positionStart, positionEnd);
+        }
+    }
+
+    /**
+     * Bind views just beyond the end being scrolled towards with what is left of the frame
+     * budget. The views are only held for the pass. They are recycled with the rest of the layout
+     * state's cache at the end of it, which puts them in the recycler's view cache still bound.
+     * From there the recycler view rebinds or drops them when the adapter notifies a change, so
+     * nothing bound ahead outlives a notification.
+     *
+     * @param direction  Direction being scrolled towards.
+     * @param frameStart Time the frame started, from {@link System#nanoTime()}.
+     * @param state      Layout state.
+     */
+    private void prefetchViews(Direction direction, long frameStart, LayoutState state) {
+        if (mFrameBudgetNs <= 0 || getChildCount() == 0) {
+            return;
+        }
+
+        final int itemCount = state.getRecyclerState().getItemCount();
+        final boolean towardsEnd = direction == Direction.END;
+        int position = towardsEnd ? nextVisiblePosition(getPosition(getAnchorAtEnd()) + 1)
+                : previousVisiblePosition(getPosition(getChildAt(0)) - 1);
+        int fetched = 0;
+        while (fetched < MAX_PREFETCHED_VIEWS && position >= 0 && position < itemCount
+                && System.nanoTime() - frameStart + mViewCostNs <= mFrameBudgetNs) {
+            // Sticky headers are attached out of order, so check each position isn't already
+            // attached or cached.
+            if (state.getCachedView(position) == null && findViewByPosition(position) == null
+                    && !isStackedHeader(position)) {
+                state.cacheView(position, state.getView(position).view);
+                fetched += 1;
+            }
+            position = towardsEnd ? nextVisiblePosition(position + 1)
+                    : previousVisiblePosition(position - 1);
+        }
+    }
+
+    /**
+     * Find the last visible position at or before the given position.
+     *
+     * @param position Adapter position.
+     * @return Position not hidden inside a collapsed section, or -1 if there is none.
+     */
+    private int previousVisiblePosition(int position) {
+        SectionIndex index = getSectionIndex();
+        if (index == null || position < 0 || position >= index.getItemCount()) {
+            return position;
+        }
+        return index.getPreviousVisiblePosition(position);
+    }
+
+    /**
+     * Apply restored collapsed sections to the sectioned adapter, as long as the data looks the
+     * same as when the state was saved.
+     */
+    private void restoreCollapsedSections() {
+        SectionIndex index = getSectionIndex();
+        if (mPendingCollapsedSections == null || index == null) {
+            return;
+        }
+
+        if (index.getSectionCount() == mPendingCollapsedSections.length
+                && index.getItemCount() == mPendingSectionItemCount) {
+            for (int i = 0; i < mPendingCollapsedSections.length; i++) {
+                index.setCollapsed(i, mPendingCollapsedSections[i]);
+            }
+        }
+        mPendingCollapsedSections = null;
+    }
+
+    private boolean isStackedHeader(int position) {
+        for (int i = 0; i < mStackedHeaders.size(); i++) {
+            if (mStackedHeaders.get(i).position == position) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private StackedHeader obtainStackedHeader() {
+        final int size = mStackedHeaderPool.size();
+        return size == 0 ? new StackedHeader() : mStackedHeaderPool.remove(size - 1);
+    }
+
+    /**
+     * Find the first attached child at or after a section. Children are in section order, so
+     * this is a binary search.
+     *
+     * @param sfp Section first position.
+     * @return Index of the child, or -1 if all children are of earlier sections.
+     */
+    private int findFirstIndexFromSection(int sfp) {
+        int min = 0;
+        int max = getChildCount() - 1;
+        int found = -1;
+        while (min <= max) {
+            final int mid = min + (max - min) / 2;
+            if (((LayoutParams) getChildAt(mid).getLayoutParams()).getTestedFirstPosition()
+                    >= sfp) {
+                found = mid;
+                max = mid - 1;
+            } else {
+                min = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Hand stacked headers to the layout state at the start of a pass, so a fill that reaches
+     * their sections uses them rather than binding them again. Those still stacked at the end of
+     * the pass are taken back.
+     *
+     * @param state Layout state.
+     */
+    private void releaseStackedHeaders(LayoutState state) {
+        for (int i = 0; i < mStackedHeaders.size(); i++) {
+            StackedHeader stacked = mStackedHeaders.get(i);
+            if (!stacked.attached) {
+                state.cacheView(stacked.position, stacked.view);
+            }
+            stacked.view = null;
+            mStackedHeaderPool.add(stacked);
+        }
+        mStackedHeaders.clear();
+    }
+
+    /**
+     * Drop stacked headers after an adapter change notification, as their positions and data
+     * can no longer be trusted. Those not attached in their own place are not handed back to the
+     * recycler, where their stale holders could be reused for a position they no longer match.
+     * The recycler view creates and binds new views for them as needed.
+     */
+    private void dropInvalidStackedHeaders() {
+        if (!mStackedHeadersInvalid) {
+            return;
+        }
+        for (int i = 0; i < mStackedHeaders.size(); i++) {
+            StackedHeader stacked = mStackedHeaders.get(i);
+            stacked.view = null;
+            mStackedHeaderPool.add(stacked);
+        }
+        mStackedHeaders.clear();
+        mStackedHeadersInvalid = false;
+    }
+
+    private void restoreSlmStates(Bundle states) {
+        mPendingSlmStates = states;
+        if (states == null) {
+            return;
+        }
+
+        mLinearSlm.onRestoreInstanceState(states.getParcelable(STATE_LINEAR_SLM));
+        mGridSlm.onRestoreInstanceState(states.getParcelable(STATE_GRID_SLM));
+        mFlowSlm.onRestoreInstanceState(states.getParcelable(STATE_FLOW_SLM));
+        mTableSlm.onRestoreInstanceState(states.getParcelable(STATE_TABLE_SLM));
+        for (String key : mSlms.keySet()) {
+            if (states.containsKey(STATE_CUSTOM_SLM_PREFIX + key)) {
+                mSlms.get(key).onRestoreInstanceState(
+                        states.getParcelable(STATE_CUSTOM_SLM_PREFIX + key));
+            }
+        }
+    }
+
+    private Bundle saveSlmStates() {
+        Bundle states = new Bundle();
+        putSlmState(states, STATE_LINEAR_SLM, mLinearSlm);
+        putSlmState(states, STATE_GRID_SLM, mGridSlm);
+        putSlmState(states, STATE_FLOW_SLM, mFlowSlm);
+        putSlmState(states, STATE_TABLE_SLM, mTableSlm);
+        for (String key : mSlms.keySet()) {
+            putSlmState(states, STATE_CUSTOM_SLM_PREFIX + key, mSlms.get(key));
+        }
+        return states.isEmpty() ? null : states;
+    }
+
+    private void putSlmState(Bundle states, String key, SectionLayoutManager slm) {
+        Parcelable slmState = slm.onSaveInstanceState();
+        if (slmState != null) {
+            states.putParcelable(key, slmState);
+        }
+    }
+
+    private void setAdapter(RecyclerView.Adapter adapter) {
+        mAdapter = adapter;
+        if (mSectionedAdapter != null) {
+            mSectionedAdapter.unregisterLayoutManager(this);
+        }
+        if (adapter instanceof SectionedAdapter) {
+            mSectionedAdapter = (SectionedAdapter) adapter;
+            mSectionedAdapter.registerLayoutManager(this);
+        } else {
+            mSectionedAdapter = null;
+        }
+    }
+
     private void updateHeaderForTrimFromStart(View header) {
         SectionData sd = new SectionData(this, header);
         if (!sd.headerParams.isHeaderSticky()) {
@@ -1693,10 +3525,39 @@ public class LayoutManager extends RecyclerView.LayoutManager {
                 top = bottom - height;
             }
 
-            layoutDecorated(header, left, top, right, bottom);
+            layoutHeader(header, left, top, right, bottom);
         }
     }
 
+    /**
+     * Listener for the end of the data coming close while scrolling.
+     */
+    public interface OnApproachingEndListener {
+
+        /**
+         * Called once for each item count when the end of the data is within the thresholds set
+         * with {@link #setOnApproachingEndListener(OnApproachingEndListener, int, int)}. Posted
+         * after the layout pass, so it is safe to change the adapter here.
+         *
+         * @param itemCount Item count when the end was approached.
+         */
+        void onApproachingEnd(int itemCount);
+    }
+
+    /**
+     * Listener for what is visible after each layout pass or scroll.
+     */
+    public interface OnVisibleRangeChangedListener {
+
+        /**
+         * Called at the end of each layout and scroll with what is now visible. Called during
+         * layout, so must not change the adapter or request a layout.
+         *
+         * @param range Visible items and sections. Reused, so only valid during the call.
+         */
+        void onVisibleRangeChanged(VisibleRange range);
+    }
+
     public enum Direction {
         START,
         END,
@@ -1742,18 +3603,36 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         @Deprecated
         public static final int HEADER_STICKY = 0x10;
 
+        public static final int FOOTER_INLINE = 0x01;
+
+        public static final int FOOTER_STICKY = 0x10;
+
         private static final boolean DEFAULT_IS_HEADER = false;
 
+        private static final boolean DEFAULT_IS_FOOTER = false;
+
         private static final int NO_FIRST_POSITION = -0x01;
 
         private static final int DEFAULT_HEADER_MARGIN = -0x01;
 
         private static final int DEFAULT_HEADER_DISPLAY = HEADER_INLINE | HEADER_STICKY;
 
+        private static final int DEFAULT_FOOTER_DISPLAY = FOOTER_INLINE;
+
         public boolean isHeader;
 
         public @HeaderDisplayOptions int headerDisplay;
 
+        /**
+         * Whether this item is the footer of its section. A footer must be the last item of the
+         * section.
+         */
+        public boolean isFooter;
+
+        private boolean mBoundLightly;
+
+        public @FooterDisplayOptions int footerDisplay;
+
         public int headerMarginEnd;
 
         public int headerMarginStart;
@@ -1772,6 +3651,8 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             super(width, height);
 
             isHeader = DEFAULT_IS_HEADER;
+            isFooter = DEFAULT_IS_FOOTER;
+            footerDisplay = DEFAULT_FOOTER_DISPLAY;
         }
 
         @TargetApi(Build.VERSION_CODES.LOLLIPOP)
@@ -1786,6 +3667,13 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             headerDisplay = a.getInt(
                     R.styleable.superslim_LayoutManager_slm_headerDisplay,
                     DEFAULT_HEADER_DISPLAY);
+            isFooter = a.getBoolean(
+                    R.styleable.superslim_LayoutManager_slm_isFooter,
+                    DEFAULT_IS_FOOTER);
+            //noinspection ResourceType
+            footerDisplay = a.getInt(
+                    R.styleable.superslim_LayoutManager_slm_footerDisplay,
+                    DEFAULT_FOOTER_DISPLAY);
             mFirstPosition = a.getInt(
                     R.styleable.superslim_LayoutManager_slm_section_firstPosition,
                     NO_FIRST_POSITION);
@@ -1870,6 +3758,27 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             }
         }
 
+        /**
+         * Check whether the view was last bound lightly, during a fast fling.
+         *
+         * @return True if the view is to be bound again in full.
+         */
+        public boolean isBoundLightly() {
+            return mBoundLightly;
+        }
+
+        /**
+         * Record whether the view is being bound lightly. {@link SectionedAdapter} does this on
+         * every bind. Other adapters can call it on bind with {@link
+         * LayoutManager#isLightweightBind()}, so the view is bound again in full once scrolling
+         * settles.
+         *
+         * @param boundLightly Whether the view is being bound lightly.
+         */
+        public void setBoundLightly(boolean boundLightly) {
+            mBoundLightly = boundLightly;
+        }
+
         public boolean areHeaderFlagsSet(@HeaderDisplayOptions int flags) {
             return (headerDisplay & flags) == flags;
         }
@@ -1910,6 +3819,10 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             return mFirstPosition;
         }
 
+        public boolean isFooterSticky() {
+            return (footerDisplay & FOOTER_STICKY) != 0;
+        }
+
         public boolean isHeaderEndAligned() {
             return (headerDisplay & HEADER_ALIGN_END) != 0;
         }
@@ -1955,6 +3868,8 @@ public class LayoutManager extends RecyclerView.LayoutManager {
                 final LayoutParams lp = (LayoutParams) other;
                 isHeader = lp.isHeader;
                 headerDisplay = lp.headerDisplay;
+                isFooter = lp.isFooter;
+                footerDisplay = lp.footerDisplay;
                 mFirstPosition = lp.mFirstPosition;
                 sectionManager = lp.sectionManager;
                 sectionManagerKind = lp.sectionManagerKind;
@@ -1965,6 +3880,8 @@ public class LayoutManager extends RecyclerView.LayoutManager {
             } else {
                 isHeader = DEFAULT_IS_HEADER;
                 headerDisplay = DEFAULT_HEADER_DISPLAY;
+                isFooter = DEFAULT_IS_FOOTER;
+                footerDisplay = DEFAULT_FOOTER_DISPLAY;
                 headerMarginEnd = DEFAULT_HEADER_MARGIN;
                 headerMarginStart = DEFAULT_HEADER_MARGIN;
                 headerStartMarginIsAuto = true;
@@ -2021,6 +3938,15 @@ public class LayoutManager extends RecyclerView.LayoutManager {
 
         }
 
+        @IntDef(flag = true, value = {
+                FOOTER_INLINE,
+                FOOTER_STICKY
+        })
+        @Retention(RetentionPolicy.SOURCE)
+        public @interface FooterDisplayOptions {
+
+        }
+
         private class MissingFirstPositionException extends RuntimeException {
 
             MissingFirstPositionException() {
@@ -2057,12 +3983,33 @@ public class LayoutManager extends RecyclerView.LayoutManager {
 
         public int anchorOffset;
 
+        public long anchorId = RecyclerView.NO_ID;
+
+        /**
+         * Collapsed state of each section, or null if no sections were collapsed.
+         */
+        public boolean[] collapsedSections;
+
+        /**
+         * Item count when the collapsed sections were saved. Used to check the data is unchanged.
+         */
+        public int sectionItemCount;
+
+        /**
+         * State saved by section layout managers, or null if there was none.
+         */
+        public Bundle slmStates;
+
         protected SavedState() {
         }
 
         protected SavedState(Parcel in) {
             anchorPosition = in.readInt();
             anchorOffset = in.readInt();
+            anchorId = in.readLong();
+            collapsedSections = in.createBooleanArray();
+            sectionItemCount = in.readInt();
+            slmStates = in.readBundle(SavedState.class.getClassLoader());
         }
 
         @Override
@@ -2074,9 +4021,66 @@ public class LayoutManager extends RecyclerView.LayoutManager {
         public void writeToParcel(Parcel out, int flags) {
             out.writeInt(anchorPosition);
             out.writeInt(anchorOffset);
+            out.writeLong(anchorId);
+            out.writeBooleanArray(collapsedSections);
+            out.writeInt(sectionItemCount);
+            out.writeBundle(slmStates);
+        }
+    }
+
+    /**
+     * A header stacked at the start edge above the section nested in it.
+     */
+    private static class StackedHeader {
+
+        View view;
+
+        int position;
+
+        /**
+         * Whether the header is also attached in its own place, in which case it is only drawn
+         * at the stacked position.
+         */
+        boolean attached;
+
+        int drawTop;
+    }
+
+    /**
+     * Draws stacked headers over the content. Stacked headers only show, they don't take touches.
+     * Headers that are not also attached in their own place have no parent, so invalidating them
+     * does nothing; they are drawn again as they are when the recycler view next redraws.
+     */
+    private class StackedHeaderDecoration extends RecyclerView.ItemDecoration {
+
+        @Override
+        public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+            for (int i = 0; i < mStackedHeaders.size(); i++) {
+                StackedHeader stacked = mStackedHeaders.get(i);
+                final int save = c.save();
+                c.translate(stacked.view.getLeft(), stacked.drawTop);
+                stacked.view.draw(c);
+                c.restoreToCount(save);
+            }
         }
     }
 
+    /**
+     * Measured size of a header and the space it was measured for.
+     */
+    private static class HeaderSize {
+
+        View view;
+
+        int width;
+
+        int unavailableWidth;
+
+        int measuredWidth;
+
+        int measuredHeight;
+    }
+
     private class NotYetImplementedSlmException extends RuntimeException {
 
         public NotYetImplementedSlmException(int id) {
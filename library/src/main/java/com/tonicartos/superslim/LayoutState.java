@@ -3,6 +3,7 @@ package com.tonicartos.superslim;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.SparseArray;
+import android.view.ViewGroup;
 
 /**
  * State to track the current top mMarkerLine views are being mMarkerLine relative to.
@@ -17,12 +18,34 @@ public class LayoutState {
 
     public final boolean isLTR;
 
+    /**
+     * Section index provided by the adapter, if any.
+     */
+    final SectionIndex sectionIndex;
+
+    /**
+     * Whether the marker line given to {@link SectionLayoutManager#fillToEnd} is the top of the
+     * section's content, as when the section's header has just been laid out, rather than the top
+     * of the anchor. The two only differ for section layouts that keep space before the first
+     * item.
+     */
+    public boolean markerAtContentTop;
+
+    private final LayoutManager mLayoutManager;
+
     public LayoutState(RecyclerView.LayoutManager layoutManager, RecyclerView.Recycler recycler,
             RecyclerView.State recyclerState) {
         viewCache = new SparseArray<>(layoutManager.getChildCount());
         this.recyclerState = recyclerState;
         this.recycler = recycler;
         isLTR = layoutManager.getLayoutDirection() == ViewCompat.LAYOUT_DIRECTION_LTR;
+        if (layoutManager instanceof LayoutManager) {
+            mLayoutManager = (LayoutManager) layoutManager;
+            sectionIndex = mLayoutManager.getSectionIndex();
+        } else {
+            mLayoutManager = null;
+            sectionIndex = null;
+        }
     }
 
     public void cacheView(int position, android.view.View view) {
@@ -45,12 +68,36 @@ public class LayoutState {
         android.view.View child = getCachedView(position);
         boolean wasCached = child != null;
         if (child == null) {
-            child = recycler.getViewForPosition(position);
+            if (mLayoutManager != null && mLayoutManager.hasFrameBudget()) {
+                final long start = System.nanoTime();
+                child = recycler.getViewForPosition(position);
+                mLayoutManager.recordViewCost(System.nanoTime() - start);
+            } else {
+                child = recycler.getViewForPosition(position);
+            }
+        }
+        if (!wasCached && mLayoutManager != null) {
+            mLayoutManager.updateLightweightBind(child, position, recycler);
+            mLayoutManager.onViewFetched(child);
+        }
+
+        if (sectionIndex != null && position < sectionIndex.getItemCount()) {
+            // Views that were not rebound may hold a first position from before a data change.
+            ViewGroup.LayoutParams params = child.getLayoutParams();
+            if (params instanceof LayoutManager.LayoutParams) {
+                ((LayoutManager.LayoutParams) params)
+                        .setFirstPosition(sectionIndex.getFirstPositionForPosition(position));
+            }
         }
 
         return new View(child, wasCached);
     }
 
+    /**
+     * Done with the cached views. Views fetched but not attached are recycled at the end of the
+     * pass that fetched them. The recycler keeps the most recent ones bound in its view cache,
+     * where their positions are kept up to date through adapter changes.
+     */
     public void recycleCache() {
         for (int i = 0; i < viewCache.size(); i++) {
             recycler.recycleView(viewCache.valueAt(i));
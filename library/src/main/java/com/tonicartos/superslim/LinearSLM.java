@@ -50,7 +50,7 @@ public class LinearSLM extends SectionLayoutManager {
 
             LayoutState.View next = state.getView(i);
             LayoutManager.LayoutParams params = next.getLayoutParams();
-            if (params.getTestedFirstPosition() != sd.firstPosition) {
+            if (!isSectionContent(params, sd)) {
                 state.cacheView(i, next.view);
                 break;
             }
@@ -103,7 +103,7 @@ public class LinearSLM extends SectionLayoutManager {
                     break;
                 }
 
-                if (params.isHeader) {
+                if (params.isHeader || params.isFooter) {
                     continue;
                 }
 
@@ -128,11 +128,7 @@ public class LinearSLM extends SectionLayoutManager {
 
             LayoutState.View next = state.getView(i);
             LayoutManager.LayoutParams params = next.getLayoutParams();
-            if (params.isHeader) {
-                state.cacheView(i, next.view);
-                break;
-            }
-            if (params.getTestedFirstPosition() != sd.firstPosition) {
+            if (params.isHeader || !isSectionContent(params, sd)) {
                 state.cacheView(i, next.view);
                 break;
             }
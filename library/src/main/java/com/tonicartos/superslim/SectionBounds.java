@@ -0,0 +1,120 @@
+package com.tonicartos.superslim;
+
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * Bounds of the attached views of each section, as of the last layout or scroll. Used by {@link
+ * SectionDecoration} to draw once per section rather than once per item.
+ *
+ * <p>The bounds are reused between passes, so copy anything that is needed later.</p>
+ */
+public class SectionBounds {
+
+    private int mSectionCount;
+
+    private int[] mFirstPositions = new int[0];
+
+    private int[] mLefts = new int[0];
+
+    private int[] mTops = new int[0];
+
+    private int[] mRights = new int[0];
+
+    private int[] mBottoms = new int[0];
+
+    /**
+     * @return Number of sections with attached views.
+     */
+    public int getSectionCount() {
+        return mSectionCount;
+    }
+
+    /**
+     * @param index Index of the section in the attached sections, from the top.
+     * @return First position of the section.
+     */
+    public int getSectionFirstPosition(int index) {
+        checkSection(index);
+        return mFirstPositions[index];
+    }
+
+    /**
+     * Get the bounds of a section. The bounds are the union of the decorated bounds of the
+     * section's attached views, including its header and footer.
+     *
+     * @param index Index of the section in the attached sections, from the top.
+     * @param out   Rect to put the bounds in.
+     * @return The out rect.
+     */
+    public Rect getBounds(int index, Rect out) {
+        checkSection(index);
+        out.set(mLefts[index], mTops[index], mRights[index], mBottoms[index]);
+        return out;
+    }
+
+    /**
+     * @param sfp Section first position.
+     * @return Index of the section in the attached sections, or -1 if it has no attached views.
+     */
+    public int indexOfSection(int sfp) {
+        for (int i = 0; i < mSectionCount; i++) {
+            if (mFirstPositions[i] == sfp) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Update from the layout manager's children in a single pass. A section's children are
+     * contiguous, so each section is closed off as soon as the next one starts.
+     *
+     * @param lm Layout manager.
+     */
+    void update(LayoutManager lm) {
+        final int childCount = lm.getChildCount();
+        if (mFirstPositions.length < childCount) {
+            mFirstPositions = new int[childCount];
+            mLefts = new int[childCount];
+            mTops = new int[childCount];
+            mRights = new int[childCount];
+            mBottoms = new int[childCount];
+        }
+
+        mSectionCount = 0;
+        int current = -1;
+        for (int i = 0; i < childCount; i++) {
+            final View child = lm.getChildAt(i);
+            final int sfp = ((LayoutManager.LayoutParams) child.getLayoutParams())
+                    .getTestedFirstPosition();
+            final int left = lm.getDecoratedLeft(child);
+            final int top = lm.getDecoratedTop(child);
+            final int right = lm.getDecoratedRight(child);
+            final int bottom = lm.getDecoratedBottom(child);
+
+            if (current == -1 || mFirstPositions[current] != sfp) {
+                current = mSectionCount;
+                mSectionCount += 1;
+                mFirstPositions[current] = sfp;
+                mLefts[current] = left;
+                mTops[current] = top;
+                mRights[current] = right;
+                mBottoms[current] = bottom;
+                continue;
+            }
+
+            mLefts[current] = Math.min(mLefts[current], left);
+            mTops[current] = Math.min(mTops[current], top);
+            mRights[current] = Math.max(mRights[current], right);
+            mBottoms[current] = Math.max(mBottoms[current], bottom);
+        }
+    }
+
+    private void checkSection(int index) {
+        if (index < 0 || index >= mSectionCount) {
+            throw new IndexOutOfBoundsException(
+                    "Section " + index + " is not within 0 - " + mSectionCount + ".");
+        }
+    }
+}
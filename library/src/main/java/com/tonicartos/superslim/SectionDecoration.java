@@ -0,0 +1,70 @@
+package com.tonicartos.superslim;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Item decoration that draws once for each section with attached views, such as a background
+ * behind a whole section. Section bounds come from the layout manager, so the children don't have
+ * to be walked on every frame.
+ *
+ * <p>Only works with a {@link LayoutManager}. Nothing is drawn for other layout managers.</p>
+ */
+public abstract class SectionDecoration extends RecyclerView.ItemDecoration {
+
+    private final Rect mBounds = new Rect();
+
+    @Override
+    public void onDraw(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        SectionBounds bounds = getSectionBounds(parent);
+        if (bounds == null) {
+            return;
+        }
+        for (int i = 0; i < bounds.getSectionCount(); i++) {
+            onDrawSection(c, bounds.getBounds(i, mBounds), bounds.getSectionFirstPosition(i),
+                    parent);
+        }
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        SectionBounds bounds = getSectionBounds(parent);
+        if (bounds == null) {
+            return;
+        }
+        for (int i = 0; i < bounds.getSectionCount(); i++) {
+            onDrawSectionOver(c, bounds.getBounds(i, mBounds), bounds.getSectionFirstPosition(i),
+                    parent);
+        }
+    }
+
+    /**
+     * Draw under a section's views.
+     *
+     * @param c      Canvas to draw on.
+     * @param bounds Bounds of the section's attached views. Don't keep it, it is reused.
+     * @param sfp    Section first position.
+     * @param parent RecyclerView being drawn.
+     */
+    public abstract void onDrawSection(Canvas c, Rect bounds, int sfp, RecyclerView parent);
+
+    /**
+     * Draw over a section's views.
+     *
+     * @param c      Canvas to draw on.
+     * @param bounds Bounds of the section's attached views. Don't keep it, it is reused.
+     * @param sfp    Section first position.
+     * @param parent RecyclerView being drawn.
+     */
+    public void onDrawSectionOver(Canvas c, Rect bounds, int sfp, RecyclerView parent) {
+    }
+
+    private SectionBounds getSectionBounds(RecyclerView parent) {
+        RecyclerView.LayoutManager lm = parent.getLayoutManager();
+        if (!(lm instanceof LayoutManager)) {
+            return null;
+        }
+        return ((LayoutManager) lm).getSectionBounds();
+    }
+}
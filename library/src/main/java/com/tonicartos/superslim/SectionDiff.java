@@ -0,0 +1,551 @@
+package com.tonicartos.superslim;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Calculates the difference between two snapshots of sectioned data. The result is a minimal
+ * batch of insert, remove, move, and change notifications that can be dispatched to an adapter
+ * in place of {@link RecyclerView.Adapter#notifyDataSetChanged()}, along with the new section
+ * first positions.
+ *
+ * <p>Sections are matched by their id, and items by their id regardless of which section they
+ * are in. The calculation does not touch any views so it can be run off the main thread with
+ * {@link #calculateAsync}.</p>
+ */
+public class SectionDiff {
+
+    private static final int TYPE_HEADER = 0;
+
+    private static final int TYPE_ITEM = 1;
+
+    private static Executor sExecutor;
+
+    private static Handler sMainHandler;
+
+    /**
+     * Calculate the difference between two lists of sections.
+     *
+     * @param oldSections Sections currently displayed by the adapter.
+     * @param newSections Sections to be displayed.
+     * @param callback    Callback describing the sections and items.
+     * @param <S>         Section type.
+     * @param <T>         Item type.
+     * @return Diff result.
+     */
+    public static <S, T> Result calculate(List<S> oldSections, List<S> newSections,
+            Callback<S, T> callback) {
+        ArrayList<Entry> oldEntries = new ArrayList<>();
+        int[] oldFirstPositions = flatten(oldSections, callback, oldEntries);
+        ArrayList<Entry> newEntries = new ArrayList<>();
+        int[] newFirstPositions = flatten(newSections, callback, newEntries);
+
+        final int oldSize = oldEntries.size();
+        final int newSize = newEntries.size();
+
+        HashMap<Key, Integer> newIndex = new HashMap<>(newSize * 2);
+        for (int i = 0; i < newSize; i++) {
+            newIndex.put(newEntries.get(i).key, i);
+        }
+
+        int[] oldToNew = new int[oldSize];
+        int[] newToOld = new int[newSize];
+        Arrays.fill(newToOld, -1);
+        for (int i = 0; i < oldSize; i++) {
+            Integer match = newIndex.get(oldEntries.get(i).key);
+            oldToNew[i] = match == null ? -1 : match;
+            if (match != null) {
+                newToOld[match] = i;
+            }
+        }
+
+        ArrayList<Op> ops = new ArrayList<>();
+
+        // Removals first, from the end so earlier positions remain valid.
+        for (int i = oldSize - 1; i >= 0; i--) {
+            if (oldToNew[i] != -1) {
+                continue;
+            }
+            int start = i;
+            while (start > 0 && oldToNew[start - 1] == -1) {
+                start -= 1;
+            }
+            ops.add(new Op(Op.REMOVE, start, i - start + 1));
+            i = start;
+        }
+
+        // Retained items in old order, identified by their new position.
+        ArrayList<Integer> retained = new ArrayList<>(oldSize);
+        int[] rankForNew = new int[newSize];
+        for (int i = 0; i < oldSize; i++) {
+            if (oldToNew[i] != -1) {
+                rankForNew[oldToNew[i]] = retained.size();
+                retained.add(oldToNew[i]);
+            }
+        }
+
+        // Items in the longest increasing run keep their place, everything else is moved.
+        boolean[] stays = longestIncreasingSubsequence(retained, newSize);
+
+        // Walk the new order, placing each item directly after its predecessor. Items waiting to
+        // be placed keep their old relative order, so positions are counted with two Fenwick
+        // trees rather than by moving items around a list. One counts waiting items by rank in
+        // the old order. The other counts placed items by the rank of the retained item they
+        // were placed at or after, offset by one for items placed ahead of all of them.
+        final int retainedSize = retained.size();
+        int[] waiting = new int[retainedSize + 1];
+        for (int r = 0; r < retainedSize; r++) {
+            update(waiting, r, 1);
+        }
+        int[] placed = new int[retainedSize + 2];
+        int anchor = -1;
+        for (int n = 0; n < newSize; n++) {
+            // Position directly after the last placed item.
+            final int next = n + prefixSum(waiting, anchor + 1);
+            if (newToOld[n] == -1) {
+                Op last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+                if (last != null && last.type == Op.INSERT && last.position + last.count == next) {
+                    last.count += 1;
+                } else {
+                    ops.add(new Op(Op.INSERT, next, 1));
+                }
+                update(placed, anchor + 1, 1);
+                continue;
+            }
+
+            final int rank = rankForNew[n];
+            final int from = prefixSum(placed, rank + 1) + prefixSum(waiting, rank);
+            update(waiting, rank, -1);
+            if (stays[n] || from == next) {
+                // Already in place. Items still waiting before it are now behind the cursor.
+                anchor = rank;
+                update(placed, rank + 1, 1);
+            } else {
+                ops.add(new Op(Op.MOVE, from, from < next ? next - 1 : next));
+                update(placed, anchor + 1, 1);
+            }
+        }
+
+        // Changes are reported against final positions so they go last.
+        int changeStart = -1;
+        for (int n = 0; n <= newSize; n++) {
+            boolean changed = false;
+            if (n < newSize && newToOld[n] != -1) {
+                Entry oldEntry = oldEntries.get(newToOld[n]);
+                Entry newEntry = newEntries.get(n);
+                changed = !contentsTheSame(oldEntry, newEntry, callback);
+            }
+
+            if (changed && changeStart == -1) {
+                changeStart = n;
+            } else if (!changed && changeStart != -1) {
+                ops.add(new Op(Op.CHANGE, changeStart, n - changeStart));
+                changeStart = -1;
+            }
+        }
+
+        int[] newSectionForPosition = new int[newSize];
+        for (int i = 0; i < newSize; i++) {
+            newSectionForPosition[i] = newEntries.get(i).section;
+        }
+
+        return new Result(ops, oldFirstPositions, newFirstPositions, newSectionForPosition);
+    }
+
+    /**
+     * Calculate the difference between two lists of sections on a background thread. The
+     * listener is called on the main thread. Neither list may be modified until the listener has
+     * been called.
+     *
+     * @param oldSections Sections currently displayed by the adapter.
+     * @param newSections Sections to be displayed.
+     * @param callback    Callback describing the sections and items. Called from a background
+     *                    thread.
+     * @param listener    Listener to receive the result.
+     * @param <S>         Section type.
+     * @param <T>         Item type.
+     */
+    public static <S, T> void calculateAsync(final List<S> oldSections,
+            final List<S> newSections, final Callback<S, T> callback,
+            final OnDiffCalculatedListener listener) {
+        final Handler handler = getMainHandler();
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Result result = calculate(oldSections, newSections, callback);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onDiffCalculated(result);
+                    }
+                });
+            }
+        });
+    }
+
+    private static <S, T> boolean contentsTheSame(Entry oldEntry, Entry newEntry,
+            Callback<S, T> callback) {
+        if (oldEntry.key.type == TYPE_HEADER) {
+            //noinspection unchecked
+            return callback.areHeadersTheSame((S) oldEntry.value, (S) newEntry.value);
+        }
+        //noinspection unchecked
+        return callback.areContentsTheSame((T) oldEntry.value, (T) newEntry.value);
+    }
+
+    private static <S, T> int[] flatten(List<S> sections, Callback<S, T> callback,
+            List<Entry> out) {
+        HashMap<Key, Integer> occurrences = new HashMap<>();
+        int[] firstPositions = new int[sections.size()];
+        for (int s = 0; s < sections.size(); s++) {
+            S section = sections.get(s);
+            firstPositions[s] = out.size();
+            if (callback.hasHeader(section)) {
+                Key key = uniqueKey(TYPE_HEADER, callback.getSectionId(section), occurrences);
+                out.add(new Entry(key, section, s));
+            }
+            List<T> items = callback.getItems(section);
+            for (int i = 0; i < items.size(); i++) {
+                T item = items.get(i);
+                Key key = uniqueKey(TYPE_ITEM, callback.getItemId(item), occurrences);
+                out.add(new Entry(key, item, s));
+            }
+        }
+        return firstPositions;
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sExecutor;
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return sMainHandler;
+    }
+
+    /**
+     * Find the longest run of retained items that are already in the right relative order.
+     *
+     * @param sequence New positions of retained items, in old order.
+     * @param newSize  Number of items in the new data.
+     * @return Flags, indexed by new position, set for items that do not need to move.
+     */
+    private static boolean[] longestIncreasingSubsequence(List<Integer> sequence, int newSize) {
+        final int n = sequence.size();
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int value = sequence.get(i);
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sequence.get(tails[mid]) < value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length += 1;
+            }
+        }
+
+        boolean[] stays = new boolean[newSize];
+        for (int i = length > 0 ? tails[length - 1] : -1; i != -1; i = previous[i]) {
+            stays[sequence.get(i)] = true;
+        }
+        return stays;
+    }
+
+    /**
+     * @param tree  Fenwick tree.
+     * @param count Number of leading entries to sum.
+     * @return Sum of the first count entries.
+     */
+    private static int prefixSum(int[] tree, int count) {
+        int sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private static Key uniqueKey(int type, Object id, HashMap<Key, Integer> occurrences) {
+        Key base = new Key(type, id, 0);
+        Integer seen = occurrences.get(base);
+        int occurrence = seen == null ? 0 : seen;
+        occurrences.put(base, occurrence + 1);
+        return occurrence == 0 ? base : new Key(type, id, occurrence);
+    }
+
+    private static void update(int[] tree, int index, int delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Describes sections and their items to the diff calculation. May be called from a background
+     * thread.
+     *
+     * @param <S> Section type.
+     * @param <T> Item type.
+     */
+    public interface Callback<S, T> {
+
+        /**
+         * @return Whether the two sections' headers would display the same.
+         */
+        boolean areHeadersTheSame(S oldSection, S newSection);
+
+        /**
+         * @return Whether the two items, which have the same id, would display the same.
+         */
+        boolean areContentsTheSame(T oldItem, T newItem);
+
+        Object getItemId(T item);
+
+        List<T> getItems(S section);
+
+        Object getSectionId(S section);
+
+        boolean hasHeader(S section);
+    }
+
+    public interface OnDiffCalculatedListener {
+
+        void onDiffCalculated(Result result);
+    }
+
+    /**
+     * Receives the operations of a diff result. Operations are given in the order they must be
+     * applied.
+     */
+    public interface UpdateCallback {
+
+        void onChanged(int position, int count);
+
+        void onInserted(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onRemoved(int position, int count);
+    }
+
+    public static class Result {
+
+        private final List<Op> mOps;
+
+        private final int[] mOldFirstPositions;
+
+        private final int[] mNewFirstPositions;
+
+        private final int[] mNewSectionForPosition;
+
+        Result(List<Op> ops, int[] oldFirstPositions, int[] newFirstPositions,
+                int[] newSectionForPosition) {
+            mOps = ops;
+            mOldFirstPositions = oldFirstPositions;
+            mNewFirstPositions = newFirstPositions;
+            mNewSectionForPosition = newSectionForPosition;
+        }
+
+        /**
+         * Dispatch the operations to an update callback.
+         *
+         * @param callback Callback to receive operations.
+         */
+        public void dispatchUpdatesTo(UpdateCallback callback) {
+            for (Op op : mOps) {
+                switch (op.type) {
+                    case Op.REMOVE:
+                        callback.onRemoved(op.position, op.count);
+                        break;
+                    case Op.INSERT:
+                        callback.onInserted(op.position, op.count);
+                        break;
+                    case Op.MOVE:
+                        callback.onMoved(op.position, op.count);
+                        break;
+                    case Op.CHANGE:
+                        callback.onChanged(op.position, op.count);
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Dispatch the operations to an adapter. The adapter's data must already have been
+         * switched over to the new sections.
+         *
+         * @param adapter Adapter to notify.
+         */
+        public void dispatchUpdatesTo(final RecyclerView.Adapter adapter) {
+            dispatchUpdatesTo(new UpdateCallback() {
+                @Override
+                public void onChanged(int position, int count) {
+                    adapter.notifyItemRangeChanged(position, count);
+                }
+
+                @Override
+                public void onInserted(int position, int count) {
+                    adapter.notifyItemRangeInserted(position, count);
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    adapter.notifyItemMoved(fromPosition, toPosition);
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    adapter.notifyItemRangeRemoved(position, count);
+                }
+            });
+        }
+
+        /**
+         * Dispatch the operations to the recycler view's adapter, then rewrite the section first
+         * positions of attached views. Attached views that are not rebound keep correct section
+         * data without having to be rebound just for the shift.
+         *
+         * @param recyclerView Recycler view displaying the adapter's data.
+         */
+        public void dispatchUpdatesTo(RecyclerView recyclerView) {
+            dispatchUpdatesTo(recyclerView.getAdapter());
+
+            for (int i = 0; i < recyclerView.getChildCount(); i++) {
+                View child = recyclerView.getChildAt(i);
+                int position = recyclerView.getChildAdapterPosition(child);
+                if (position == RecyclerView.NO_POSITION) {
+                    continue;
+                }
+                ViewGroup.LayoutParams params = child.getLayoutParams();
+                if (params instanceof LayoutManager.LayoutParams) {
+                    ((LayoutManager.LayoutParams) params)
+                            .setFirstPosition(getFirstPositionForNewPosition(position));
+                }
+            }
+        }
+
+        /**
+         * Get the section first position of an item in the new data.
+         *
+         * @param position Adapter position in the new data.
+         * @return First position of the section the item belongs to.
+         */
+        public int getFirstPositionForNewPosition(int position) {
+            return mNewFirstPositions[mNewSectionForPosition[position]];
+        }
+
+        /**
+         * @return First positions of the new sections, indexed by section.
+         */
+        public int[] getNewFirstPositions() {
+            return mNewFirstPositions;
+        }
+
+        /**
+         * @return First positions of the old sections, indexed by section.
+         */
+        public int[] getOldFirstPositions() {
+            return mOldFirstPositions;
+        }
+    }
+
+    private static class Entry {
+
+        final Key key;
+
+        final Object value;
+
+        final int section;
+
+        Entry(Key key, Object value, int section) {
+            this.key = key;
+            this.value = value;
+            this.section = section;
+        }
+    }
+
+    private static class Key {
+
+        final int type;
+
+        final Object id;
+
+        final int occurrence;
+
+        Key(int type, Object id, int occurrence) {
+            this.type = type;
+            this.id = id;
+            this.occurrence = occurrence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type == other.type && occurrence == other.occurrence
+                    && (id == null ? other.id == null : id.equals(other.id));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + (id == null ? 0 : id.hashCode());
+            result = 31 * result + occurrence;
+            return result;
+        }
+    }
+
+    private static class Op {
+
+        static final int REMOVE = 0;
+
+        static final int INSERT = 1;
+
+        static final int MOVE = 2;
+
+        static final int CHANGE = 3;
+
+        final int type;
+
+        final int position;
+
+        /**
+         * Item count, or the destination position for moves.
+         */
+        int count;
+
+        Op(int type, int position, int count) {
+            this.type = type;
+            this.position = position;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package com.tonicartos.superslim;
+
+import java.util.Arrays;
+
+/**
+ * Index of section sizes for mapping between adapter positions and sections. Section sizes are
+ * held in a Fenwick tree so looking up the section for a position, or the first position of a
+ * section, is O(log n) in the number of sections. Changing the size of a section is also O(log
+ * n), while adding or removing whole sections rebuilds the index.
+ *
+ * <p>Sections can be collapsed to just their header. The content of a collapsed section is still
+ * in the adapter, but is hidden from layout. Hidden item counts are kept in a second tree so
+ * counting hidden items before a position is also O(log n).</p>
+ *
+ * <p>Sections can be nested by giving them a depth. A section's parent is the closest section
+ * before it with a smaller depth. Parents and the extent of each section's descendants are
+ * worked out whenever the index is rebuilt, so looking them up is O(1).</p>
+ */
+public class SectionIndex {
+
+    private int mSectionCount;
+
+    private int mItemCount;
+
+    private int mHiddenCount;
+
+    /**
+     * Total number of items in each section, including any header.
+     */
+    private int[] mSizes = new int[0];
+
+    private boolean[] mHasHeader = new boolean[0];
+
+    /**
+     * Whether the last content item of each section is its footer.
+     */
+    private boolean[] mHasFooter = new boolean[0];
+
+    private boolean[] mCollapsed = new boolean[0];
+
+    private int[] mDepths = new int[0];
+
+    private int[] mParents = new int[0];
+
+    /**
+     * Index of the first section after each section's descendants.
+     */
+    private int[] mSubtreeEnds = new int[0];
+
+    /**
+     * 1-based Fenwick tree over section sizes.
+     */
+    private int[] mTree = new int[1];
+
+    /**
+     * 1-based Fenwick tree over the number of hidden items in each section.
+     */
+    private int[] mHiddenTree = new int[1];
+
+    /**
+     * Add a new section.
+     *
+     * @param section   Index the section will have.
+     * @param itemCount Number of content items in the section, not including the header.
+     * @param hasHeader Whether the section has a header.
+     */
+    public void addSection(int section, int itemCount, boolean hasHeader) {
+        addSection(section, itemCount, hasHeader, 0);
+    }
+
+    /**
+     * Add a new nested section.
+     *
+     * @param section   Index the section will have.
+     * @param itemCount Number of content items in the section, not including the header.
+     * @param hasHeader Whether the section has a header.
+     * @param depth     Nesting depth of the section, 0 for a top level section.
+     */
+    public void addSection(int section, int itemCount, boolean hasHeader, int depth) {
+        checkSection(section, mSectionCount + 1);
+        checkDepth(depth);
+        ensureCapacity(mSectionCount + 1);
+        System.arraycopy(mSizes, section, mSizes, section + 1, mSectionCount - section);
+        System.arraycopy(mHasHeader, section, mHasHeader, section + 1, mSectionCount - section);
+        System.arraycopy(mHasFooter, section, mHasFooter, section + 1, mSectionCount - section);
+        System.arraycopy(mCollapsed, section, mCollapsed, section + 1, mSectionCount - section);
+        System.arraycopy(mDepths, section, mDepths, section + 1, mSectionCount - section);
+        mSizes[section] = itemCount + (hasHeader ? 1 : 0);
+        mHasHeader[section] = hasHeader;
+        mHasFooter[section] = false;
+        mCollapsed[section] = false;
+        mDepths[section] = depth;
+        mSectionCount += 1;
+        rebuild();
+    }
+
+    /**
+     * Get the first position of a section.
+     *
+     * @param section Section index.
+     * @return Adapter position of the section's header, or first item if it has no header.
+     */
+    public int getFirstPosition(int section) {
+        checkSection(section, mSectionCount);
+        return prefixSum(mTree, section);
+    }
+
+    /**
+     * Get the position of a section's footer.
+     *
+     * @param section Section index.
+     * @return Adapter position of the footer, or -1 if the section has no footer.
+     */
+    public int getFooterPosition(int section) {
+        if (!hasFooter(section)) {
+            return -1;
+        }
+        return prefixSum(mTree, section) + mSizes[section] - 1;
+    }
+
+    /**
+     * Get the first position of the section containing the given adapter position.
+     *
+     * @param position Adapter position.
+     * @return Section first position.
+     */
+    public int getFirstPositionForPosition(int position) {
+        return getFirstPosition(getSectionForPosition(position));
+    }
+
+    /**
+     * @return Copy of the collapsed state of each section.
+     */
+    public boolean[] getCollapsedSections() {
+        return Arrays.copyOf(mCollapsed, mSectionCount);
+    }
+
+    /**
+     * Count the hidden items before a position.
+     *
+     * @param position Adapter position, or the item count to count all hidden items.
+     * @return Number of items before the position that are hidden by collapsed sections.
+     */
+    public int getHiddenCountBefore(int position) {
+        if (position >= mItemCount) {
+            return mHiddenCount;
+        }
+
+        final int section = getSectionForPosition(position);
+        int hidden = prefixSum(mHiddenTree, section);
+        if (mCollapsed[section]) {
+            final int contentStart = prefixSum(mTree, section) + (mHasHeader[section] ? 1 : 0);
+            hidden += Math.max(0, position - contentStart);
+        }
+        return hidden;
+    }
+
+    /**
+     * @return Number of items hidden by collapsed sections.
+     */
+    public int getHiddenItemCount() {
+        return mHiddenCount;
+    }
+
+    /**
+     * Get the index of a position within its section.
+     *
+     * @param position Adapter position.
+     * @return Index of the item in the section's content, or -1 if the position is a header.
+     */
+    public int getIndexInSection(int position) {
+        final int section = getSectionForPosition(position);
+        final int index = position - prefixSum(mTree, section);
+        return mHasHeader[section] ? index - 1 : index;
+    }
+
+    /**
+     * @return Total number of items in all sections, including headers.
+     */
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    public int getSectionCount() {
+        return mSectionCount;
+    }
+
+    /**
+     * Get the section containing an adapter position.
+     *
+     * @param position Adapter position.
+     * @return Section index.
+     */
+    public int getSectionForPosition(int position) {
+        if (position < 0 || position >= mItemCount) {
+            throw new IndexOutOfBoundsException(
+                    "Position " + position + " is not within 0 - " + mItemCount + ".");
+        }
+
+        // Descend the tree to find the last section starting at or before the position.
+        int section = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(mSectionCount); step > 0; step >>= 1) {
+            int next = section + step;
+            if (next <= mSectionCount && mTree[next] <= remaining) {
+                section = next;
+                remaining -= mTree[next];
+            }
+        }
+        return section;
+    }
+
+    /**
+     * @param section Section index.
+     * @return Number of content items in the section, not including the header.
+     */
+    public int getSectionItemCount(int section) {
+        checkSection(section, mSectionCount);
+        return mHasHeader[section] ? mSizes[section] - 1 : mSizes[section];
+    }
+
+    /**
+     * @param section Section index.
+     * @return Nesting depth of the section, 0 for a top level section.
+     */
+    public int getSectionDepth(int section) {
+        checkSection(section, mSectionCount);
+        return mDepths[section];
+    }
+
+    /**
+     * @param section Section index.
+     * @return Index of the section's parent, or -1 if it is a top level section.
+     */
+    public int getParentSection(int section) {
+        checkSection(section, mSectionCount);
+        return mParents[section];
+    }
+
+    /**
+     * Get the end of a section's descendants.
+     *
+     * @param section Section index.
+     * @return Index of the first section after the section and all of its descendants, or the
+     * section count if they run to the end.
+     */
+    public int getSubtreeEnd(int section) {
+        checkSection(section, mSectionCount);
+        return mSubtreeEnds[section];
+    }
+
+    /**
+     * Find the closest position, at or after the given one, that is not hidden by a collapsed
+     * section.
+     *
+     * @param position Adapter position.
+     * @return Visible position, or the item count if there is none.
+     */
+    public int getNextVisiblePosition(int position) {
+        while (position < mItemCount) {
+            final int section = getSectionForPosition(position);
+            if (!mCollapsed[section]) {
+                return position;
+            }
+            final int first = prefixSum(mTree, section);
+            if (mHasHeader[section] && position == first) {
+                return position;
+            }
+            position = first + mSizes[section];
+        }
+        return mItemCount;
+    }
+
+    /**
+     * Find the closest position, at or before the given one, that is not hidden by a collapsed
+     * section.
+     *
+     * @param position Adapter position.
+     * @return Visible position, or -1 if there is none.
+     */
+    public int getPreviousVisiblePosition(int position) {
+        while (position >= 0) {
+            final int section = getSectionForPosition(position);
+            if (!mCollapsed[section]) {
+                return position;
+            }
+            final int first = prefixSum(mTree, section);
+            if (mHasHeader[section]) {
+                return first;
+            }
+            position = first - 1;
+        }
+        return -1;
+    }
+
+    public boolean hasHeader(int section) {
+        checkSection(section, mSectionCount);
+        return mHasHeader[section];
+    }
+
+    /**
+     * @param section Section index.
+     * @return True if the last content item of the section is its footer.
+     */
+    public boolean hasFooter(int section) {
+        checkSection(section, mSectionCount);
+        return mHasFooter[section] && getSectionItemCount(section) > 0;
+    }
+
+    public boolean isCollapsed(int section) {
+        checkSection(section, mSectionCount);
+        return mCollapsed[section];
+    }
+
+    /**
+     * @param position Adapter position.
+     * @return True if the position is content in a collapsed section.
+     */
+    public boolean isHidden(int position) {
+        if (position < 0 || position >= mItemCount) {
+            return false;
+        }
+        final int section = getSectionForPosition(position);
+        return mCollapsed[section]
+                && !(mHasHeader[section] && position == prefixSum(mTree, section));
+    }
+
+    /**
+     * Change the number of content items in a section.
+     *
+     * @param section Section index.
+     * @param delta   Number of items added, or removed if negative.
+     */
+    public void offsetSectionItemCount(int section, int delta) {
+        checkSection(section, mSectionCount);
+        if (getSectionItemCount(section) + delta < 0) {
+            throw new IllegalArgumentException("Section " + section + " cannot have "
+                    + (getSectionItemCount(section) + delta) + " items.");
+        }
+        mSizes[section] += delta;
+        mItemCount += delta;
+        update(mTree, section, delta);
+        if (mCollapsed[section]) {
+            mHiddenCount += delta;
+            update(mHiddenTree, section, delta);
+        }
+    }
+
+    public void removeSection(int section) {
+        checkSection(section, mSectionCount);
+        System.arraycopy(mSizes, section + 1, mSizes, section, mSectionCount - section - 1);
+        System.arraycopy(mHasHeader, section + 1, mHasHeader, section,
+                mSectionCount - section - 1);
+        System.arraycopy(mHasFooter, section + 1, mHasFooter, section,
+                mSectionCount - section - 1);
+        System.arraycopy(mCollapsed, section + 1, mCollapsed, section,
+                mSectionCount - section - 1);
+        System.arraycopy(mDepths, section + 1, mDepths, section, mSectionCount - section - 1);
+        mSectionCount -= 1;
+        rebuild();
+    }
+
+    /**
+     * Collapse a section to just its header, or expand it again.
+     *
+     * @param section   Section index.
+     * @param collapsed Whether the section's content should be hidden.
+     * @return True if the collapsed state changed.
+     */
+    public boolean setCollapsed(int section, boolean collapsed) {
+        checkSection(section, mSectionCount);
+        if (mCollapsed[section] == collapsed) {
+            return false;
+        }
+        mCollapsed[section] = collapsed;
+        final int delta = collapsed ? getSectionItemCount(section) : -getSectionItemCount(section);
+        mHiddenCount += delta;
+        update(mHiddenTree, section, delta);
+        return true;
+    }
+
+    /**
+     * Set whether the last content item of a section is its footer. The footer is counted as one
+     * of the section's content items.
+     *
+     * @param section   Section index.
+     * @param hasFooter Whether the section has a footer.
+     */
+    public void setHasFooter(int section, boolean hasFooter) {
+        checkSection(section, mSectionCount);
+        mHasFooter[section] = hasFooter;
+    }
+
+    /**
+     * Replace all sections. All sections are expanded.
+     *
+     * @param itemCounts Number of content items in each section, not including headers.
+     * @param hasHeaders Whether each section has a header.
+     */
+    public void setSections(int[] itemCounts, boolean[] hasHeaders) {
+        setSections(itemCounts, hasHeaders, null);
+    }
+
+    /**
+     * Replace all sections with nested sections. All sections are expanded.
+     *
+     * @param itemCounts Number of content items in each section, not including headers.
+     * @param hasHeaders Whether each section has a header.
+     * @param depths     Nesting depth of each section, or null if all are top level.
+     */
+    public void setSections(int[] itemCounts, boolean[] hasHeaders, int[] depths) {
+        if (itemCounts.length != hasHeaders.length
+                || (depths != null && depths.length != itemCounts.length)) {
+            throw new IllegalArgumentException("Mismatched section data.");
+        }
+        mSectionCount = 0;
+        ensureCapacity(itemCounts.length);
+        for (int i = 0; i < itemCounts.length; i++) {
+            mSizes[i] = itemCounts[i] + (hasHeaders[i] ? 1 : 0);
+            mHasHeader[i] = hasHeaders[i];
+            mHasFooter[i] = false;
+            mCollapsed[i] = false;
+            mDepths[i] = depths == null ? 0 : depths[i];
+            checkDepth(mDepths[i]);
+        }
+        mSectionCount = itemCounts.length;
+        rebuild();
+    }
+
+    private void checkSection(int section, int limit) {
+        if (section < 0 || section >= limit) {
+            throw new IndexOutOfBoundsException(
+                    "Section " + section + " is not within 0 - " + limit + ".");
+        }
+    }
+
+    private void checkDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Section depth " + depth + " is negative.");
+        }
+    }
+
+    private void ensureCapacity(int sectionCount) {
+        if (mSizes.length >= sectionCount) {
+            return;
+        }
+        final int capacity = Math.max(sectionCount, mSizes.length * 2);
+        mSizes = Arrays.copyOf(mSizes, capacity);
+        mHasHeader = Arrays.copyOf(mHasHeader, capacity);
+        mHasFooter = Arrays.copyOf(mHasFooter, capacity);
+        mCollapsed = Arrays.copyOf(mCollapsed, capacity);
+        mDepths = Arrays.copyOf(mDepths, capacity);
+        mParents = Arrays.copyOf(mParents, capacity);
+        mSubtreeEnds = Arrays.copyOf(mSubtreeEnds, capacity);
+    }
+
+    private int hiddenSize(int section) {
+        if (!mCollapsed[section]) {
+            return 0;
+        }
+        return mHasHeader[section] ? mSizes[section] - 1 : mSizes[section];
+    }
+
+    /**
+     * Sum of the values of all sections before the given section.
+     */
+    private int prefixSum(int[] tree, int section) {
+        int sum = 0;
+        for (int i = section; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Work out each section's parent and the end of its descendants in O(n). Sections whose
+     * descendants are still open always form a chain of parents, so it is walked as a stack.
+     */
+    private void rebuildNesting() {
+        int open = -1;
+        for (int i = 0; i < mSectionCount; i++) {
+            while (open != -1 && mDepths[open] >= mDepths[i]) {
+                final int parent = mParents[open];
+                mSubtreeEnds[open] = i;
+                open = parent;
+            }
+            mParents[i] = open;
+            open = i;
+        }
+        while (open != -1) {
+            final int parent = mParents[open];
+            mSubtreeEnds[open] = mSectionCount;
+            open = parent;
+        }
+    }
+
+    /**
+     * Rebuild the trees from section sizes in O(n).
+     */
+    private void rebuild() {
+        rebuildNesting();
+        if (mTree.length < mSectionCount + 1) {
+            mTree = new int[mSizes.length + 1];
+            mHiddenTree = new int[mSizes.length + 1];
+        }
+        mItemCount = 0;
+        mHiddenCount = 0;
+        Arrays.fill(mTree, 0);
+        Arrays.fill(mHiddenTree, 0);
+        for (int i = 1; i <= mSectionCount; i++) {
+            final int hidden = hiddenSize(i - 1);
+            mTree[i] += mSizes[i - 1];
+            mHiddenTree[i] += hidden;
+            mItemCount += mSizes[i - 1];
+            mHiddenCount += hidden;
+            int parent = i + (i & -i);
+            if (parent <= mSectionCount) {
+                mTree[parent] += mTree[i];
+                mHiddenTree[parent] += mHiddenTree[i];
+            }
+        }
+    }
+
+    private void update(int[] tree, int section, int delta) {
+        for (int i = section + 1; i <= mSectionCount; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+}
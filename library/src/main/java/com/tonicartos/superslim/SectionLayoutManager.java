@@ -1,6 +1,7 @@
 package com.tonicartos.superslim;
 
 import android.content.Context;
+import android.os.Parcelable;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -373,6 +374,57 @@ public abstract class SectionLayoutManager {
         return this;
     }
 
+    /**
+     * Called when the adapter's items change, before the next layout. Drop anything cached about
+     * items or section positions here.
+     */
+    public void onItemsChanged() {
+    }
+
+    /**
+     * Called when the items in a range of positions change, before the next layout. Items after
+     * an insert, remove or move are included, as their positions have moved. Sections that start
+     * before the range are unchanged. By default everything is dropped, as for {@link
+     * #onItemsChanged()}.
+     *
+     * @param positionStart First position that changed.
+     * @param positionEnd   Position after the last that changed.
+     */
+    public void onItemsChanged(int positionStart, int positionEnd) {
+        onItemsChanged();
+    }
+
+    /**
+     * Restore state saved by {@link #onSaveInstanceState()}. Called before the first layout after
+     * the layout manager is restored.
+     *
+     * @param state State previously saved by this section layout manager.
+     */
+    public void onRestoreInstanceState(Parcelable state) {
+    }
+
+    /**
+     * Save any state that should survive a configuration change or process death, such as
+     * configuration computed during layout.
+     *
+     * @return State to restore, or null if there is none.
+     */
+    public Parcelable onSaveInstanceState() {
+        return null;
+    }
+
+    /**
+     * Check a view is content of the section. Views in other sections and the section's footer
+     * are not content, and the footer is laid out by the layout manager.
+     *
+     * @param params Layout params of the view.
+     * @param sd     Section data.
+     * @return True if the view is section content.
+     */
+    protected boolean isSectionContent(LayoutManager.LayoutParams params, SectionData sd) {
+        return params.getTestedFirstPosition() == sd.firstPosition && !params.isFooter;
+    }
+
     protected int addView(LayoutState.View child, int position, LayoutManager.Direction direction,
             LayoutState state) {
         int addIndex;
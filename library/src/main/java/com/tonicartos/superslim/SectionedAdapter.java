@@ -0,0 +1,314 @@
+package com.tonicartos.superslim;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+
+/**
+ * Adapter base for sectioned data. Subclasses describe their data as sections of items with
+ * optional headers, and the adapter takes care of the mapping to flat adapter positions and of
+ * setting up section layout params during bind.
+ *
+ * <p>Changes to the data must be reported with the section notify methods so the section index
+ * stays in step with the data.</p>
+ *
+ * <p>Sections with headers can be collapsed to just their header with {@link
+ * #setSectionCollapsed(int, boolean)}. Collapsing does not change adapter positions, so no item
+ * change is notified; the content is simply skipped over by the layout manager.</p>
+ *
+ * @param <VH> View holder type.
+ */
+public abstract class SectionedAdapter<VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<VH> {
+
+    private final SectionIndex mIndex = new SectionIndex();
+
+    private boolean mIndexValid = false;
+
+    private final ArrayList<LayoutManager> mLayoutManagers = new ArrayList<>();
+
+    /**
+     * Get the first position of a section.
+     *
+     * @param section Section index.
+     * @return Adapter position.
+     */
+    public int getFirstPosition(int section) {
+        return getSectionIndex().getFirstPosition(section);
+    }
+
+    /**
+     * Get the index of an item within its section.
+     *
+     * @param position Adapter position.
+     * @return Index within the section's content, or -1 if the position is a header.
+     */
+    public int getIndexInSection(int position) {
+        return getSectionIndex().getIndexInSection(position);
+    }
+
+    @Override
+    public final int getItemCount() {
+        return getSectionIndex().getItemCount();
+    }
+
+    public abstract int getSectionCount();
+
+    /**
+     * Get the nesting depth of a section. A section is nested in the closest section before it
+     * with a smaller depth. While a nested section is at the top, the sticky headers of the
+     * sections it is nested in are stacked above its own, if enabled with
+     * {@link LayoutManager#setStackedHeadersEnabled(boolean)}.
+     *
+     * <p>Stacked headers are drawn by an item decoration the layout manager adds to the recycler
+     * view while they are enabled and it is attached. A stacked header that has scrolled out of
+     * its own place is not a child of the recycler view, so it takes no touches and changes to it
+     * only show when the recycler view next draws. Use {@link #notifySectionHeaderChanged(int)}
+     * to update one.</p>
+     *
+     * @param section Section index.
+     * @return Depth of the section, 0 for a top level section.
+     */
+    public int getSectionDepth(int section) {
+        return 0;
+    }
+
+    /**
+     * Get the section containing an adapter position.
+     *
+     * @param position Adapter position.
+     * @return Section index.
+     */
+    public int getSectionForPosition(int position) {
+        return getSectionIndex().getSectionForPosition(position);
+    }
+
+    /**
+     * @param section Section index.
+     * @return Number of content items in the section, not including the header.
+     */
+    public abstract int getSectionItemCount(int section);
+
+    /**
+     * Check whether the view being bound should be bound lightly, because it is passing by in a
+     * fast fling. Skip image loads and other expensive work when this is true; the view is bound
+     * again in full once scrolling settles.
+     *
+     * @return True if any attached layout manager asks for a lightweight bind.
+     * @see LayoutManager#setLightweightBindVelocity(int)
+     */
+    public boolean isLightweightBind() {
+        for (int i = 0; i < mLayoutManagers.size(); i++) {
+            if (mLayoutManagers.get(i).isLightweightBind()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public abstract boolean hasSectionHeader(int section);
+
+    /**
+     * Check whether the last item of a section is its footer. The footer is counted in {@link
+     * #getSectionItemCount(int)} and bound with {@link #onBindItemViewHolder}. The layout manager
+     * only looks ahead for a sticky footer in sections that have one.
+     *
+     * @param section Section index.
+     * @return True if the section's last item is a footer.
+     */
+    public boolean hasSectionFooter(int section) {
+        return false;
+    }
+
+    public boolean isSectionCollapsed(int section) {
+        return getSectionIndex().isCollapsed(section);
+    }
+
+    /**
+     * Notify that all sections may have changed. Rebuilds the section index, which also expands
+     * any collapsed sections.
+     */
+    public void notifySectionsChanged() {
+        mIndexValid = false;
+        notifyDataSetChanged();
+    }
+
+    public void notifySectionHeaderChanged(int section) {
+        if (getSectionIndex().hasHeader(section)) {
+            notifyItemChanged(getFirstPosition(section));
+        }
+    }
+
+    public void notifySectionInserted(int section) {
+        if (!isIndexCurrent()) {
+            return;
+        }
+        SectionIndex index = getSectionIndex();
+        final boolean hasHeader = hasSectionHeader(section);
+        final int itemCount = getSectionItemCount(section);
+        index.addSection(section, itemCount, hasHeader, getSectionDepth(section));
+        index.setHasFooter(section, hasSectionFooter(section));
+        notifyItemRangeInserted(index.getFirstPosition(section),
+                itemCount + (hasHeader ? 1 : 0));
+    }
+
+    public void notifySectionItemRangeChanged(int section, int index, int itemCount) {
+        notifyItemRangeChanged(getContentPosition(section, index), itemCount);
+    }
+
+    public void notifySectionItemRangeInserted(int section, int index, int itemCount) {
+        if (!isIndexCurrent()) {
+            return;
+        }
+        getSectionIndex().offsetSectionItemCount(section, itemCount);
+        notifyItemRangeInserted(getContentPosition(section, index), itemCount);
+    }
+
+    public void notifySectionItemRangeRemoved(int section, int index, int itemCount) {
+        if (!isIndexCurrent()) {
+            return;
+        }
+        final int position = getContentPosition(section, index);
+        getSectionIndex().offsetSectionItemCount(section, -itemCount);
+        notifyItemRangeRemoved(position, itemCount);
+    }
+
+    public void notifySectionRemoved(int section) {
+        if (!isIndexCurrent()) {
+            return;
+        }
+        SectionIndex index = getSectionIndex();
+        final int position = index.getFirstPosition(section);
+        final int count = index.getSectionItemCount(section) + (index.hasHeader(section) ? 1 : 0);
+        index.removeSection(section);
+        notifyItemRangeRemoved(position, count);
+    }
+
+    @Override
+    public final void onBindViewHolder(VH holder, int position) {
+        SectionIndex index = getSectionIndex();
+        final int section = index.getSectionForPosition(position);
+        final int indexInSection = index.getIndexInSection(position);
+
+        final View itemView = holder.itemView;
+        final ViewGroup.LayoutParams current = itemView.getLayoutParams();
+        final LayoutManager.LayoutParams lp;
+        if (current instanceof LayoutManager.LayoutParams) {
+            lp = (LayoutManager.LayoutParams) current;
+        } else {
+            lp = LayoutManager.LayoutParams.from(current);
+        }
+        lp.isHeader = indexInSection == -1;
+        lp.isFooter = index.hasFooter(section)
+                && indexInSection == index.getSectionItemCount(section) - 1;
+        lp.setFirstPosition(index.getFirstPosition(section));
+        // Recorded on every bind, so a view is only bound again if this bind was the light one.
+        lp.setBoundLightly(isLightweightBind());
+        itemView.setLayoutParams(lp);
+
+        if (indexInSection == -1) {
+            onBindHeaderViewHolder(holder, section);
+        } else {
+            onBindItemViewHolder(holder, section, indexInSection);
+        }
+    }
+
+    /**
+     * Bind a section header. The item view's layout params have already been set up with the
+     * section's first position and can be further configured here.
+     *
+     * @param holder  View holder.
+     * @param section Section index.
+     */
+    public abstract void onBindHeaderViewHolder(VH holder, int section);
+
+    /**
+     * Bind a section item. The item view's layout params have already been set up with the
+     * section's first position and can be further configured here. The last item of a section
+     * for which {@link #hasSectionFooter(int)} is true is already marked as the footer, and can be
+     * made sticky by setting {@link LayoutManager.LayoutParams#footerDisplay}.
+     *
+     * @param holder  View holder.
+     * @param section Section index.
+     * @param index   Index of the item within the section's content.
+     */
+    public abstract void onBindItemViewHolder(VH holder, int section, int index);
+
+    /**
+     * Collapse a section to just its header, or expand it again. Only attached layout managers
+     * showing the section lay out again.
+     *
+     * @param section   Section index.
+     * @param collapsed Whether to hide the section's content.
+     */
+    public void setSectionCollapsed(int section, boolean collapsed) {
+        SectionIndex index = getSectionIndex();
+        if (!index.setCollapsed(section, collapsed)) {
+            return;
+        }
+        final int position = index.getFirstPosition(section);
+        final int count = index.getSectionItemCount(section) + (index.hasHeader(section) ? 1 : 0);
+        for (int i = 0; i < mLayoutManagers.size(); i++) {
+            mLayoutManagers.get(i).onSectionCollapseChanged(position, count);
+        }
+    }
+
+    /**
+     * Get the section index for this adapter's data. Built on first use, or after {@link
+     * #notifySectionsChanged()}.
+     *
+     * @return Section index.
+     */
+    SectionIndex getSectionIndex() {
+        if (!mIndexValid) {
+            final int sectionCount = getSectionCount();
+            int[] itemCounts = new int[sectionCount];
+            boolean[] hasHeaders = new boolean[sectionCount];
+            int[] depths = new int[sectionCount];
+            for (int i = 0; i < sectionCount; i++) {
+                itemCounts[i] = getSectionItemCount(i);
+                hasHeaders[i] = hasSectionHeader(i);
+                depths[i] = getSectionDepth(i);
+            }
+            mIndex.setSections(itemCounts, hasHeaders, depths);
+            for (int i = 0; i < sectionCount; i++) {
+                mIndex.setHasFooter(i, hasSectionFooter(i));
+            }
+            mIndexValid = true;
+        }
+        return mIndex;
+    }
+
+    void registerLayoutManager(LayoutManager layoutManager) {
+        if (!mLayoutManagers.contains(layoutManager)) {
+            mLayoutManagers.add(layoutManager);
+        }
+    }
+
+    void unregisterLayoutManager(LayoutManager layoutManager) {
+        mLayoutManagers.remove(layoutManager);
+    }
+
+    /**
+     * Check the index was built before the data changed. If not, it is built from the current
+     * data and a full data set change is notified instead.
+     *
+     * @return True if the index can be updated incrementally.
+     */
+    private boolean isIndexCurrent() {
+        if (mIndexValid) {
+            return true;
+        }
+        getSectionIndex();
+        notifyDataSetChanged();
+        return false;
+    }
+
+    private int getContentPosition(int section, int index) {
+        SectionIndex sectionIndex = getSectionIndex();
+        return sectionIndex.getFirstPosition(section) + (sectionIndex.hasHeader(section) ? 1 : 0)
+                + index;
+    }
+}
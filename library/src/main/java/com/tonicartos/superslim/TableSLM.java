@@ -0,0 +1,679 @@
+package com.tonicartos.superslim;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+/**
+ * Lays out section content as a table. Each item is a cell and rows are filled in order, so a
+ * table row does not need its own nested layout. Columns line up across all rows of the section.
+ *
+ * <p>Column widths are worked out once per section, either from declared column weights, or from
+ * the widest cell in each column of the first few rows. Widths are cached until the section
+ * moves, its header changes or the content width changes, and each cell is measured against the
+ * width of its column. The cached widths are saved with the layout manager's state, so a restored
+ * table is not sampled again. A sticky section header can use {@link #getColumnWidths(int)} to
+ * line up column titles.</p>
+ */
+public class TableSLM extends SectionLayoutManager {
+
+    public static int ID = LayoutManager.SECTION_MANAGER_TABLE;
+
+    private static final int DEFAULT_NUM_COLUMNS = 1;
+
+    private static final int DEFAULT_SAMPLE_ROWS = 8;
+
+    private static final String STATE_COLUMNS = "columns";
+
+    /**
+     * Column widths keyed by section first position.
+     */
+    private final SparseArray<Columns> mColumns = new SparseArray<>();
+
+    /**
+     * Heights of the rows measured in the current layout pass, keyed by row start position.
+     */
+    private final SparseIntArray mRowHeights = new SparseIntArray();
+
+    /**
+     * Layout pass the row heights were measured in.
+     */
+    private LayoutState mRowHeightsState;
+
+    /**
+     * Cells of the row being measured or laid out, reused from row to row.
+     */
+    private LayoutState.View[] mRowViews = new LayoutState.View[DEFAULT_NUM_COLUMNS];
+
+    public TableSLM(LayoutManager layoutManager) {
+        super(layoutManager);
+    }
+
+    @Override
+    public int computeHeaderOffset(int firstVisiblePosition, SectionData sd, LayoutState state) {
+        /*
+         * Work from an assumed overlap and add row heights from the start until the overlap is
+         * zero or less, or the current position (or max items) is reached.
+         */
+        final Columns columns = getColumns(sd, state);
+        final LayoutState.View[] views = getRowViews(columns);
+
+        int areaAbove = 0;
+        for (int row = columns.firstContentPosition;
+                areaAbove < sd.headerHeight && row < firstVisiblePosition;
+                row += columns.widths.length) {
+            final int rowHeight = measureRow(views, row, columns, sd, state);
+            if (rowHeight == -1) {
+                break;
+            }
+            areaAbove += rowHeight;
+        }
+        Arrays.fill(views, null);
+
+        if (areaAbove == sd.headerHeight) {
+            return 0;
+        } else if (areaAbove > sd.headerHeight) {
+            return 1;
+        } else {
+            return -areaAbove;
+        }
+    }
+
+    @Override
+    public int fillToEnd(int leadingEdge, int markerLine, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        if (markerLine >= leadingEdge) {
+            return markerLine;
+        }
+
+        final int itemCount = state.getRecyclerState().getItemCount();
+        if (anchorPosition >= itemCount) {
+            return markerLine;
+        }
+
+        final Columns columns = getColumns(sd, state);
+        if (anchorPosition < columns.firstContentPosition) {
+            return markerLine;
+        }
+
+        // Lay out from the start of the anchor's row. Detach and scrap any cells in the row before
+        // the anchor so the whole row is laid out again.
+        final int rowStart = getRowStart(anchorPosition, columns);
+        for (int position = rowStart; position < anchorPosition; position++) {
+            View child = mLayoutManager.findViewByPosition(position);
+            if (child != null) {
+                markerLine = mLayoutManager.getDecoratedTop(child);
+                mLayoutManager.detachAndScrapView(child, state.recycler);
+            }
+        }
+
+        final LayoutState.View[] views = getRowViews(columns);
+        for (int row = rowStart; markerLine < leadingEdge && row < itemCount;
+                row += columns.widths.length) {
+            final int rowHeight = layoutRow(views, row, markerLine, LayoutManager.Direction.END,
+                    columns, sd, state);
+            if (rowHeight == -1) {
+                break;
+            }
+            markerLine += rowHeight;
+        }
+        Arrays.fill(views, null);
+
+        return markerLine;
+    }
+
+    @Override
+    public int fillToStart(int leadingEdge, int markerLine, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        final Columns columns = getColumns(sd, state);
+        final int rowStart = anchorPosition < columns.firstContentPosition ? -1 :
+                getRowStart(anchorPosition, columns);
+        final LayoutState.View[] views = getRowViews(columns);
+
+        if (rowStart != -1) {
+            // Lay out the whole of the anchor's row. Detach and scrap any cells in the row after
+            // the anchor, and move the marker line to the bottom of the row.
+            final int rowEnd = rowStart + columns.widths.length;
+            boolean scrapped = false;
+            for (int position = anchorPosition + 1; position < rowEnd; position++) {
+                View child = mLayoutManager.findViewByPosition(position);
+                if (child != null) {
+                    markerLine = mLayoutManager.getDecoratedTop(child);
+                    mLayoutManager.detachAndScrapView(child, state.recycler);
+                    scrapped = true;
+                }
+            }
+            if (scrapped) {
+                markerLine += measureRow(views, rowStart, columns, sd, state);
+            }
+        }
+
+        // Check to see if we have to adjust for minimum section height. We don't if there is an
+        // attached view in this section.
+        View check = mLayoutManager.getChildAt(0);
+        boolean applyMinHeight = check != null && ((LayoutManager.LayoutParams) check
+                .getLayoutParams()).getTestedFirstPosition() != sd.firstPosition;
+
+        int minHeightOffset = 0;
+        if (applyMinHeight) {
+            int sectionHeight = 0;
+            for (int row = rowStart; row >= columns.firstContentPosition
+                    && sectionHeight < sd.minimumHeight; row -= columns.widths.length) {
+                sectionHeight += Math.max(0, measureRow(views, row, columns, sd, state));
+            }
+
+            if (sectionHeight < sd.minimumHeight) {
+                minHeightOffset = sectionHeight - sd.minimumHeight;
+                markerLine += minHeightOffset;
+            }
+        }
+
+        for (int row = rowStart; row >= columns.firstContentPosition;
+                row -= columns.widths.length) {
+            if (markerLine - minHeightOffset <= leadingEdge) {
+                break;
+            }
+
+            final int rowHeight = layoutRow(views, row, markerLine,
+                    LayoutManager.Direction.START, columns, sd, state);
+            if (rowHeight == -1) {
+                break;
+            }
+            markerLine -= rowHeight;
+        }
+        Arrays.fill(views, null);
+
+        return markerLine;
+    }
+
+    @Override
+    public int finishFillToEnd(int leadingEdge, View anchor, SectionData sd, LayoutState state) {
+        final int anchorPosition = mLayoutManager.getPosition(anchor);
+        final int markerLine = getLowestEdge(sd.firstPosition, mLayoutManager.getChildCount() - 1,
+                mLayoutManager.getDecoratedBottom(anchor));
+
+        return fillToEnd(leadingEdge, markerLine, anchorPosition + 1, sd, state);
+    }
+
+    @Override
+    public int finishFillToStart(int leadingEdge, View anchor, SectionData sd, LayoutState state) {
+        final int anchorPosition = mLayoutManager.getPosition(anchor);
+        final int markerLine = mLayoutManager.getDecoratedTop(anchor);
+
+        return fillToStart(leadingEdge, markerLine, anchorPosition - 1, sd, state);
+    }
+
+    @Override
+    public LayoutManager.LayoutParams generateLayoutParams(LayoutManager.LayoutParams params) {
+        return LayoutParams.from(params);
+    }
+
+    @Override
+    public LayoutManager.LayoutParams generateLayoutParams(Context c, AttributeSet attrs) {
+        return new LayoutParams(c, attrs);
+    }
+
+    /**
+     * Get the column widths used for a section, in column order from the start edge.
+     *
+     * @param sectionFirstPosition First position of the section.
+     * @return Copy of the column widths, or null if the section has not been laid out.
+     */
+    public int[] getColumnWidths(int sectionFirstPosition) {
+        Columns columns = mColumns.get(sectionFirstPosition);
+        return columns == null ? null : Arrays.copyOf(columns.widths, columns.widths.length);
+    }
+
+    @Override
+    public int getLowestEdge(int sectionFirstPosition, int lastIndex, int defaultEdge) {
+        // Cells in a row share a top edge, so the lowest edge is the bottom of the tallest cell
+        // in the last row.
+        boolean found = false;
+        int rowTop = 0;
+        int bottom = defaultEdge;
+        for (int i = lastIndex; i >= 0; i--) {
+            View child = mLayoutManager.getChildAt(i);
+            LayoutManager.LayoutParams params = (LayoutManager.LayoutParams) child
+                    .getLayoutParams();
+            if (params.getTestedFirstPosition() != sectionFirstPosition) {
+                break;
+            }
+
+            if (params.isHeader) {
+                continue;
+            }
+
+            final int top = mLayoutManager.getDecoratedTop(child);
+            if (!found) {
+                found = true;
+                rowTop = top;
+                bottom = mLayoutManager.getDecoratedBottom(child);
+            } else if (top != rowTop) {
+                break;
+            } else {
+                bottom = Math.max(bottom, mLayoutManager.getDecoratedBottom(child));
+            }
+        }
+
+        return bottom;
+    }
+
+    @Override
+    public void onItemsChanged() {
+        mColumns.clear();
+        mRowHeights.clear();
+    }
+
+    @Override
+    public void onItemsChanged(int positionStart, int positionEnd) {
+        // Only sections starting in the changed range may have moved or have new header params.
+        for (int i = mColumns.size() - 1; i >= 0; i--) {
+            final int sfp = mColumns.keyAt(i);
+            if (sfp >= positionStart && sfp < positionEnd) {
+                mColumns.removeAt(i);
+            }
+        }
+        mRowHeights.clear();
+    }
+
+    @Override
+    public void onRestoreInstanceState(Parcelable state) {
+        mColumns.clear();
+        final int[] saved = state instanceof Bundle ?
+                ((Bundle) state).getIntArray(STATE_COLUMNS) : null;
+        if (saved == null) {
+            return;
+        }
+
+        // Each section is saved as its first position, available width, first content position,
+        // column count and then the column widths.
+        int i = 0;
+        while (i < saved.length) {
+            final int sfp = saved[i++];
+            Columns columns = new Columns();
+            columns.availableWidth = saved[i++];
+            columns.firstContentPosition = saved[i++];
+            final int numColumns = saved[i++];
+            columns.widths = Arrays.copyOfRange(saved, i, i + numColumns);
+            columns.offsets = getOffsets(columns.widths);
+            i += numColumns;
+            mColumns.put(sfp, columns);
+        }
+    }
+
+    @Override
+    public Parcelable onSaveInstanceState() {
+        if (mColumns.size() == 0) {
+            return null;
+        }
+
+        int length = 0;
+        for (int i = 0; i < mColumns.size(); i++) {
+            length += 4 + mColumns.valueAt(i).widths.length;
+        }
+        int[] saved = new int[length];
+        int j = 0;
+        for (int i = 0; i < mColumns.size(); i++) {
+            final Columns columns = mColumns.valueAt(i);
+            saved[j++] = mColumns.keyAt(i);
+            saved[j++] = columns.availableWidth;
+            saved[j++] = columns.firstContentPosition;
+            saved[j++] = columns.widths.length;
+            System.arraycopy(columns.widths, 0, saved, j, columns.widths.length);
+            j += columns.widths.length;
+        }
+
+        Bundle state = new Bundle();
+        state.putIntArray(STATE_COLUMNS, saved);
+        return state;
+    }
+
+    /**
+     * Work out column widths from the widest cell of each column in the first rows of the
+     * section. Widths are then scaled to fill the available width.
+     */
+    private int[] sampleColumnWidths(int numColumns, int sampleRows, int availableWidth,
+            int firstContentPosition, SectionData sd, LayoutState state) {
+        final int itemCount = state.getRecyclerState().getItemCount();
+        final int sampleEnd = Math.min(itemCount, firstContentPosition + numColumns * sampleRows);
+
+        float[] widths = new float[numColumns];
+        for (int position = firstContentPosition; position < sampleEnd; position++) {
+            LayoutState.View child = state.getView(position);
+            state.cacheView(position, child.view);
+            if (!isSectionContent(child.getLayoutParams(), sd)) {
+                break;
+            }
+
+            mLayoutManager.measureChildWithMargins(child.view, sd.getTotalMarginWidth(), 0);
+            final int column = (position - firstContentPosition) % numColumns;
+            widths[column] = Math.max(widths[column],
+                    mLayoutManager.getDecoratedMeasuredWidth(child.view));
+        }
+
+        return distribute(widths, availableWidth);
+    }
+
+    /**
+     * Split the available width between columns in proportion to their weights. Any rounding
+     * error goes to the last column, so the columns always fill the width exactly.
+     */
+    private static int[] distribute(float[] weights, int availableWidth) {
+        float total = 0;
+        for (float weight : weights) {
+            total += Math.max(0, weight);
+        }
+
+        int[] widths = new int[weights.length];
+        int used = 0;
+        for (int i = 0; i < weights.length - 1; i++) {
+            widths[i] = total > 0 ? (int) (availableWidth * Math.max(0, weights[i]) / total) :
+                    availableWidth / weights.length;
+            used += widths[i];
+        }
+        widths[weights.length - 1] = availableWidth - used;
+        return widths;
+    }
+
+    private Columns getColumns(SectionData sd, LayoutState state) {
+        final int availableWidth = mLayoutManager.getWidth() - sd.contentStart - sd.contentEnd;
+        Columns columns = mColumns.get(sd.firstPosition);
+        if (columns != null && columns.availableWidth == availableWidth) {
+            return columns;
+        }
+
+        int numColumns = DEFAULT_NUM_COLUMNS;
+        int sampleRows = DEFAULT_SAMPLE_ROWS;
+        float[] weights = null;
+        if (sd.headerParams instanceof LayoutParams) {
+            LayoutParams params = (LayoutParams) sd.headerParams;
+            weights = params.getColumnWeights();
+            if (weights != null) {
+                numColumns = weights.length;
+            } else if (params.getNumColumns() > 0) {
+                numColumns = params.getNumColumns();
+            }
+            if (params.getSampleRows() > 0) {
+                sampleRows = params.getSampleRows();
+            }
+        }
+
+        columns = new Columns();
+        columns.availableWidth = availableWidth;
+        columns.firstContentPosition = sd.hasHeader ? sd.firstPosition + 1 : sd.firstPosition;
+        if (weights != null) {
+            columns.widths = distribute(weights, availableWidth);
+        } else {
+            columns.widths = sampleColumnWidths(numColumns, sampleRows, availableWidth,
+                    columns.firstContentPosition, sd, state);
+        }
+        columns.offsets = getOffsets(columns.widths);
+        if (columns.widths[0] == 0) {
+            Log.e("SuperSLiM", "Too many columns (" + numColumns + ") for available width "
+                    + availableWidth + ".");
+        }
+
+        mColumns.put(sd.firstPosition, columns);
+        return columns;
+    }
+
+    /**
+     * @return Offset of each column from the start edge of the content.
+     */
+    private static int[] getOffsets(int[] widths) {
+        int[] offsets = new int[widths.length];
+        for (int i = 1; i < widths.length; i++) {
+            offsets[i] = offsets[i - 1] + widths[i - 1];
+        }
+        return offsets;
+    }
+
+    /**
+     * @return Array for the cells of a row, with at least one slot for each column.
+     */
+    private LayoutState.View[] getRowViews(Columns columns) {
+        if (mRowViews.length < columns.widths.length) {
+            mRowViews = new LayoutState.View[columns.widths.length];
+        }
+        return mRowViews;
+    }
+
+    private int getRowStart(int position, Columns columns) {
+        final int numColumns = columns.widths.length;
+        return position - (position - columns.firstContentPosition) % numColumns;
+    }
+
+    /**
+     * Lay out a row of cells.
+     *
+     * @return Height of the row, or -1 if the row is not in the section.
+     */
+    private int layoutRow(LayoutState.View[] views, int rowStart, int markerLine,
+            LayoutManager.Direction direction, Columns columns, SectionData sd,
+            LayoutState state) {
+        final int rowHeight = measureRow(views, rowStart, columns, sd, state);
+        if (rowHeight == -1) {
+            return -1;
+        }
+
+        final int top = direction == LayoutManager.Direction.END ?
+                markerLine : markerLine - rowHeight;
+        final int numColumns = columns.widths.length;
+        final int contentLeft = state.isLTR ? sd.contentStart : sd.contentEnd;
+        for (int i = 0; i < numColumns; i++) {
+            if (views[i] == null) {
+                break;
+            }
+
+            final View child = views[i].view;
+            final int width = Math.min(columns.widths[i],
+                    mLayoutManager.getDecoratedMeasuredWidth(child));
+            final int height;
+            if (views[i].getLayoutParams().height == LayoutManager.LayoutParams.MATCH_PARENT) {
+                height = rowHeight;
+            } else {
+                height = mLayoutManager.getDecoratedMeasuredHeight(child);
+            }
+
+            final int left = state.isLTR ? contentLeft + columns.offsets[i] :
+                    contentLeft + columns.availableWidth - columns.offsets[i] - width;
+            mLayoutManager.layoutDecorated(child, left, top, left + width, top + height);
+        }
+
+        // Views are added at the start when filling towards the start, so add them in reverse to
+        // keep the children in position order.
+        for (int i = 0; i < numColumns; i++) {
+            final int index = direction == LayoutManager.Direction.END ? i : numColumns - 1 - i;
+            if (views[index] != null) {
+                addView(views[index], rowStart + index, direction, state);
+            }
+        }
+
+        return rowHeight;
+    }
+
+    /**
+     * Measure the cells of a row, each against the width of its column. The cells are cached in
+     * the layout state. A row is measured once per layout pass, later calls in the same pass take
+     * the cells from the cache and return the height measured before.
+     *
+     * @param views Filled with the row's cells, one per column, followed by nulls if the row is
+     *              short.
+     * @return Height of the row, or -1 if the row is not in the section.
+     */
+    private int measureRow(LayoutState.View[] views, int rowStart, Columns columns,
+            SectionData sd, LayoutState state) {
+        if (mRowHeightsState != state) {
+            mRowHeightsState = state;
+            mRowHeights.clear();
+        }
+
+        final int itemCount = state.getRecyclerState().getItemCount();
+        final int numColumns = columns.widths.length;
+        Arrays.fill(views, 0, numColumns, null);
+
+        // Cells that were attached since the row was measured have left the cache and are
+        // measured again.
+        final boolean measured = mRowHeights.indexOfKey(rowStart) >= 0;
+        boolean allCached = measured;
+        int rowHeight = -1;
+        for (int i = 0; i < numColumns; i++) {
+            final int position = rowStart + i;
+            if (position >= itemCount) {
+                break;
+            }
+
+            LayoutState.View child = state.getView(position);
+            state.cacheView(position, child.view);
+            if (!isSectionContent(child.getLayoutParams(), sd)) {
+                break;
+            }
+
+            if (!measured || !child.wasCached) {
+                mLayoutManager.measureChildWithMargins(child.view, sd.getTotalMarginWidth()
+                        + columns.availableWidth - columns.widths[i], 0);
+                allCached = false;
+            }
+            rowHeight = Math.max(rowHeight, mLayoutManager.getDecoratedMeasuredHeight(child.view));
+            views[i] = child;
+        }
+
+        if (allCached) {
+            return mRowHeights.get(rowStart);
+        }
+        mRowHeights.put(rowStart, rowHeight);
+        return rowHeight;
+    }
+
+    /**
+     * Column layout for a section.
+     */
+    private static class Columns {
+
+        int availableWidth;
+
+        int firstContentPosition;
+
+        int[] widths;
+
+        int[] offsets;
+    }
+
+    public static class LayoutParams extends LayoutManager.LayoutParams {
+
+        private int mNumColumns;
+
+        private int mSampleRows;
+
+        private float[] mColumnWeights;
+
+        public LayoutParams(int w, int h) {
+            super(w, h);
+        }
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+
+            TypedArray a = c.obtainStyledAttributes(attrs, R.styleable.superslim_TableSLM);
+            mNumColumns = a.getInt(R.styleable.superslim_TableSLM_slm_table_numColumns,
+                    DEFAULT_NUM_COLUMNS);
+            mSampleRows = a.getInt(R.styleable.superslim_TableSLM_slm_table_sampleRows,
+                    DEFAULT_SAMPLE_ROWS);
+            a.recycle();
+        }
+
+        /**
+         * Use {@link #from} instead.
+         *
+         * @param other Source layout params.
+         */
+        protected LayoutParams(ViewGroup.MarginLayoutParams other) {
+            super(other);
+            init(other);
+        }
+
+        /**
+         * Use {@link #from} instead as this constructor will not copy the margin params from the
+         * source layout.
+         *
+         * @param other Source layout params.
+         */
+        protected LayoutParams(ViewGroup.LayoutParams other) {
+            super(other);
+            init(other);
+        }
+
+        /**
+         * Creates a new instance of {@link LayoutParams}.
+         *
+         * @param other Source layout params.
+         * @return New table layout params.
+         */
+        public static LayoutParams from(ViewGroup.LayoutParams other) {
+            if (other == null) {
+                Log.w("SuperSLiM", "Null value passed in call to TableSLM.LayoutParams.from().");
+                return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+            } else if (other instanceof ViewGroup.MarginLayoutParams) {
+                return new LayoutParams((ViewGroup.MarginLayoutParams) other);
+            } else {
+                return new LayoutParams(other);
+            }
+        }
+
+        public float[] getColumnWeights() {
+            return mColumnWeights;
+        }
+
+        /**
+         * Declare the relative width of each column. This sets the number of columns and skips
+         * sampling cells for their widths.
+         *
+         * @param weights Weight of each column, or null to sample cell widths instead.
+         */
+        public void setColumnWeights(float... weights) {
+            mColumnWeights = weights;
+        }
+
+        public int getNumColumns() {
+            return mNumColumns;
+        }
+
+        public void setNumColumns(int numColumns) {
+            mNumColumns = numColumns;
+        }
+
+        public int getSampleRows() {
+            return mSampleRows;
+        }
+
+        /**
+         * Set how many rows are measured to find column widths when no weights are declared.
+         *
+         * @param sampleRows Number of rows from the start of the section.
+         */
+        public void setSampleRows(int sampleRows) {
+            mSampleRows = sampleRows;
+        }
+
+        private void init(ViewGroup.LayoutParams other) {
+            if (other instanceof LayoutParams) {
+                final LayoutParams lp = (LayoutParams) other;
+                mNumColumns = lp.mNumColumns;
+                mSampleRows = lp.mSampleRows;
+                mColumnWeights = lp.mColumnWeights;
+            } else {
+                mNumColumns = DEFAULT_NUM_COLUMNS;
+                mSampleRows = DEFAULT_SAMPLE_ROWS;
+            }
+        }
+    }
+}
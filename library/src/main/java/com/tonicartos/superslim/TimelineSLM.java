@@ -0,0 +1,313 @@
+package com.tonicartos.superslim;
+
+import android.view.View;
+
+/**
+ * Lays out section content on a timeline. Items are placed by keys the adapter supplies, such as
+ * minutes since midnight, scaled by a number of pixels per key unit. The top of an item is given by
+ * its start key and the height by its end key, so an item's place in the section is known without
+ * measuring any of the items before it.
+ *
+ * <p>Working out how far a header overlaps the content or where the first item goes is a
+ * calculation rather than a walk over measured items. Use {@link #findPositionForKey(int, int,
+ * long)} to find the item to scroll to for a given key, for example the current time.</p>
+ *
+ * <p>Items must be in key order in the adapter and must not overlap. Section content is as tall as
+ * the span between the section's start and end keys, so empty time at the start and end of a
+ * section is kept. A timeline needs its keys, so it is registered as a custom section layout
+ * manager with {@link LayoutManager#addSlm(String, SectionLayoutManager)}.</p>
+ */
+public class TimelineSLM extends SectionLayoutManager {
+
+    private final Timeline mTimeline;
+
+    private float mPixelsPerKey;
+
+    public TimelineSLM(LayoutManager layoutManager, Timeline timeline, float pixelsPerKey) {
+        super(layoutManager);
+        mTimeline = timeline;
+        mPixelsPerKey = pixelsPerKey;
+    }
+
+    @Override
+    public int computeHeaderOffset(int firstVisiblePosition, SectionData sd, LayoutState state) {
+        final int areaAbove = getItemTop(sd.firstPosition, firstVisiblePosition);
+
+        if (areaAbove == sd.headerHeight) {
+            return 0;
+        } else if (areaAbove > sd.headerHeight) {
+            return 1;
+        } else {
+            return -areaAbove;
+        }
+    }
+
+    /**
+     * Find the item at a key with a binary search over the item start keys. Keys are read from the
+     * timeline, no views are bound.
+     *
+     * @param firstPosition First content position to search.
+     * @param lastPosition  Last content position to search.
+     * @param key           Key to find.
+     * @return Last position in the range that starts at or before the key, or the first position if
+     * the key is before all of them.
+     */
+    public int findPositionForKey(int firstPosition, int lastPosition, long key) {
+        int low = firstPosition;
+        int high = lastPosition;
+        while (low < high) {
+            // Round up so the range always shrinks.
+            final int mid = (low + high + 1) >>> 1;
+            if (mTimeline.getItemStartKey(mid) <= key) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public int fillToEnd(int leadingEdge, int markerLine, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        // The marker line is the content top when the section is filled from its start, otherwise
+        // it is the top of the anchor, even if the anchor is the first item.
+        int origin = markerLine;
+        if (!state.markerAtContentTop) {
+            origin -= getItemTop(sd.firstPosition, anchorPosition);
+        }
+
+        return layoutToEnd(leadingEdge, origin, anchorPosition, sd, state);
+    }
+
+    @Override
+    public int fillToStart(int leadingEdge, int markerLine, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        // The marker line is the bottom of the section content.
+        final int origin = markerLine - getSectionHeight(sd);
+
+        return layoutToStart(leadingEdge, origin, anchorPosition, sd, state);
+    }
+
+    @Override
+    public int finishFillToEnd(int leadingEdge, View anchor, SectionData sd, LayoutState state) {
+        final int anchorPosition = mLayoutManager.getPosition(anchor);
+        final int origin = getOrigin(sd.firstPosition, anchor);
+
+        return layoutToEnd(leadingEdge, origin, anchorPosition + 1, sd, state);
+    }
+
+    @Override
+    public int finishFillToStart(int leadingEdge, View anchor, SectionData sd, LayoutState state) {
+        final int anchorPosition = mLayoutManager.getPosition(anchor);
+        final int origin = getOrigin(sd.firstPosition, anchor);
+
+        return layoutToStart(leadingEdge, origin, anchorPosition - 1, sd, state);
+    }
+
+    @Override
+    public int getHighestEdge(int sectionFirstPosition, int firstIndex, int defaultEdge) {
+        for (int i = firstIndex; i < mLayoutManager.getChildCount(); i++) {
+            View child = mLayoutManager.getChildAt(i);
+            LayoutManager.LayoutParams params = (LayoutManager.LayoutParams) child
+                    .getLayoutParams();
+            if (params.getTestedFirstPosition() != sectionFirstPosition) {
+                break;
+            }
+            if (params.isHeader || params.isFooter) {
+                continue;
+            }
+            // Any content item gives the section top.
+            return getOrigin(sectionFirstPosition, child);
+        }
+        return defaultEdge;
+    }
+
+    @Override
+    public int getLowestEdge(int sectionFirstPosition, int lastIndex, int defaultEdge) {
+        for (int i = lastIndex; i >= 0; i--) {
+            View child = mLayoutManager.getChildAt(i);
+            LayoutManager.LayoutParams params = (LayoutManager.LayoutParams) child
+                    .getLayoutParams();
+            if (params.getTestedFirstPosition() != sectionFirstPosition) {
+                break;
+            }
+            if (params.isHeader || params.isFooter) {
+                continue;
+            }
+            // Empty time at the end of the section is part of the section.
+            return getOrigin(sectionFirstPosition, child) + getKeyOffset(
+                    mTimeline.getSectionEndKey(sectionFirstPosition), sectionFirstPosition);
+        }
+        return defaultEdge;
+    }
+
+    public float getPixelsPerKey() {
+        return mPixelsPerKey;
+    }
+
+    /**
+     * Set the scale of the timeline, for example to zoom in or out.
+     *
+     * @param pixelsPerKey Pixels per key unit.
+     */
+    public void setPixelsPerKey(float pixelsPerKey) {
+        mPixelsPerKey = pixelsPerKey;
+        mLayoutManager.requestLayout();
+    }
+
+    private int layoutToEnd(int leadingEdge, int origin, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        final int contentEnd = getContentEnd(sd, state);
+        final int end = contentEnd == -1 ? state.getRecyclerState().getItemCount() : contentEnd;
+
+        for (int i = anchorPosition; i < end; i++) {
+            // Without the section index the view has to be fetched to find the end of the section.
+            LayoutState.View next = null;
+            if (contentEnd == -1) {
+                next = state.getView(i);
+                if (!isSectionContent(next.getLayoutParams(), sd)) {
+                    state.cacheView(i, next.view);
+                    break;
+                }
+            }
+
+            // Items are placed by their keys, so the view is only fetched if it is needed.
+            final int top = origin + getItemTop(sd.firstPosition, i);
+            if (top >= leadingEdge) {
+                if (next != null) {
+                    state.cacheView(i, next.view);
+                }
+                return top;
+            }
+
+            if (next == null) {
+                next = state.getView(i);
+            }
+            layoutChild(next, origin, i, sd, state);
+            addView(next, i, LayoutManager.Direction.END, state);
+        }
+
+        return origin + getSectionHeight(sd);
+    }
+
+    private int layoutToStart(int leadingEdge, int origin, int anchorPosition, SectionData sd,
+            LayoutState state) {
+        final int firstContentPosition = sd.hasHeader ? sd.firstPosition + 1 : sd.firstPosition;
+        for (int i = anchorPosition; i >= firstContentPosition; i--) {
+            // Items are placed by their keys, so the view is only fetched if it is needed.
+            final int bottom = origin + getKeyOffset(mTimeline.getItemEndKey(i), sd.firstPosition);
+            if (bottom <= leadingEdge) {
+                return bottom;
+            }
+
+            LayoutState.View next = state.getView(i);
+            layoutChild(next, origin, i, sd, state);
+            addView(next, i, LayoutManager.Direction.START, state);
+        }
+
+        return origin;
+    }
+
+    /**
+     * Get the position after the last content item of a section from the section index.
+     *
+     * @return Position after the section's content, not counting a footer, or -1 if there is no
+     * current section index.
+     */
+    private int getContentEnd(SectionData sd, LayoutState state) {
+        final SectionIndex index = state.sectionIndex;
+        if (index == null || index.getItemCount() != state.getRecyclerState().getItemCount()) {
+            return -1;
+        }
+        final int section = index.getSectionForPosition(sd.firstPosition);
+        int end = sd.firstPosition + (index.hasHeader(section) ? 1 : 0)
+                + index.getSectionItemCount(section);
+        if (index.hasFooter(section)) {
+            end -= 1;
+        }
+        return end;
+    }
+
+    private int getItemTop(int sectionFirstPosition, int position) {
+        return getKeyOffset(mTimeline.getItemStartKey(position), sectionFirstPosition);
+    }
+
+    private int getKeyOffset(long key, int sectionFirstPosition) {
+        return (int) ((key - mTimeline.getSectionStartKey(sectionFirstPosition)) * mPixelsPerKey);
+    }
+
+    /**
+     * Get the top of a section's content from one of its attached items.
+     */
+    private int getOrigin(int sectionFirstPosition, View child) {
+        return mLayoutManager.getDecoratedTop(child)
+                - getItemTop(sectionFirstPosition, mLayoutManager.getPosition(child));
+    }
+
+    private int getSectionHeight(SectionData sd) {
+        return Math.max(sd.minimumHeight,
+                getKeyOffset(mTimeline.getSectionEndKey(sd.firstPosition), sd.firstPosition));
+    }
+
+    private void layoutChild(LayoutState.View child, int origin, int position, SectionData sd,
+            LayoutState state) {
+        final int top = origin + getItemTop(sd.firstPosition, position);
+        final int bottom = origin
+                + getKeyOffset(mTimeline.getItemEndKey(position), sd.firstPosition);
+        measureChild(child, bottom - top, sd);
+
+        final int width = mLayoutManager.getDecoratedMeasuredWidth(child.view);
+        final int left = state.isLTR ? sd.contentStart : sd.contentEnd;
+        mLayoutManager.layoutDecorated(child.view, left, top, left + width, bottom);
+    }
+
+    /**
+     * Measure an item to fill the width and be exactly as tall as its span of the timeline.
+     */
+    private void measureChild(LayoutState.View child, int height, SectionData sd) {
+        mLayoutManager.measureChildWithMargins(child.view, sd.getTotalMarginWidth(), 0);
+
+        final int decoratedHeight = mLayoutManager.getDecoratedMeasuredHeight(child.view);
+        if (decoratedHeight == height) {
+            return;
+        }
+        final int insets = decoratedHeight - child.view.getMeasuredHeight();
+        child.view.measure(
+                View.MeasureSpec.makeMeasureSpec(child.view.getMeasuredWidth(),
+                        View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(Math.max(0, height - insets),
+                        View.MeasureSpec.EXACTLY));
+    }
+
+    /**
+     * Supplies the keys that place items on the timeline. Keys are in any unit, such as minutes,
+     * and are scaled by the pixels per key unit.
+     */
+    public interface Timeline {
+
+        /**
+         * @param sectionFirstPosition First position of the section.
+         * @return Key at the top of the section's content.
+         */
+        long getSectionStartKey(int sectionFirstPosition);
+
+        /**
+         * @param sectionFirstPosition First position of the section.
+         * @return Key at the bottom of the section's content.
+         */
+        long getSectionEndKey(int sectionFirstPosition);
+
+        /**
+         * @param position Adapter position of a content item.
+         * @return Key at the top of the item.
+         */
+        long getItemStartKey(int position);
+
+        /**
+         * @param position Adapter position of a content item.
+         * @return Key at the bottom of the item.
+         */
+        long getItemEndKey(int position);
+    }
+}
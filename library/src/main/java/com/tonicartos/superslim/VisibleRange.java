@@ -0,0 +1,171 @@
+package com.tonicartos.superslim;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of what is visible after a layout pass. Published by the layout manager to {@link
+ * LayoutManager.OnVisibleRangeChangedListener}s at the end of each layout or scroll, so listeners
+ * don't have to scan the children again themselves.
+ *
+ * <p>The snapshot is reused between passes, so copy anything that is needed later.</p>
+ */
+public class VisibleRange {
+
+    private int mFirstPosition = RecyclerView.NO_POSITION;
+
+    private int mLastPosition = RecyclerView.NO_POSITION;
+
+    private int mItemCount;
+
+    private int[] mPositions = new int[0];
+
+    private float[] mFractions = new float[0];
+
+    private int mSectionCount;
+
+    private int[] mSections = new int[0];
+
+    /**
+     * @return First visible adapter position, or {@link RecyclerView#NO_POSITION} if nothing is
+     * visible.
+     */
+    public int getFirstVisiblePosition() {
+        return mFirstPosition;
+    }
+
+    /**
+     * @return Last visible adapter position, or {@link RecyclerView#NO_POSITION} if nothing is
+     * visible.
+     */
+    public int getLastVisiblePosition() {
+        return mLastPosition;
+    }
+
+    /**
+     * @param index Index of the section in the visible sections, from the top.
+     * @return First position of the visible section.
+     */
+    public int getSectionFirstPosition(int index) {
+        if (index < 0 || index >= mSectionCount) {
+            throw new IndexOutOfBoundsException(
+                    "Section " + index + " is not within 0 - " + mSectionCount + ".");
+        }
+        return mSections[index];
+    }
+
+    /**
+     * @return Number of sections with visible items.
+     */
+    public int getVisibleSectionCount() {
+        return mSectionCount;
+    }
+
+    /**
+     * @return Number of visible items, including headers.
+     */
+    public int getVisibleItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * @param index Index of the visible item, in child order.
+     * @return Adapter position of the visible item.
+     */
+    public int getVisiblePosition(int index) {
+        checkItem(index);
+        return mPositions[index];
+    }
+
+    /**
+     * @param index Index of the visible item, in child order.
+     * @return Fraction of the item's height that is visible, greater than 0 and up to 1.
+     */
+    public float getVisibleFraction(int index) {
+        checkItem(index);
+        return mFractions[index];
+    }
+
+    /**
+     * @param position Adapter position.
+     * @return Fraction of the item's height that is visible, or 0 if it is not visible.
+     */
+    public float getVisibleFractionForPosition(int position) {
+        for (int i = 0; i < mItemCount; i++) {
+            if (mPositions[i] == position) {
+                return mFractions[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Update from the layout manager's children in a single pass.
+     *
+     * @param lm Layout manager.
+     */
+    void update(LayoutManager lm) {
+        final int childCount = lm.getChildCount();
+        if (mPositions.length < childCount) {
+            mPositions = new int[childCount];
+            mFractions = new float[childCount];
+            mSections = new int[childCount];
+        }
+
+        final int topEdge = lm.getClipToPadding() ? lm.getPaddingTop() : 0;
+        final int bottomEdge = lm.getClipToPadding() ?
+                lm.getHeight() - lm.getPaddingBottom() : lm.getHeight();
+
+        mFirstPosition = RecyclerView.NO_POSITION;
+        mLastPosition = RecyclerView.NO_POSITION;
+        mItemCount = 0;
+        mSectionCount = 0;
+        for (int i = 0; i < childCount; i++) {
+            final View child = lm.getChildAt(i);
+            final int top = lm.getDecoratedTop(child);
+            final int bottom = lm.getDecoratedBottom(child);
+            final int visibleHeight = Math.min(bottom, bottomEdge) - Math.max(top, topEdge);
+            if (visibleHeight <= 0) {
+                continue;
+            }
+
+            final int position = lm.getPosition(child);
+            mPositions[mItemCount] = position;
+            mFractions[mItemCount] = bottom > top ? (float) visibleHeight / (bottom - top) : 1;
+            mItemCount += 1;
+
+            if (mFirstPosition == RecyclerView.NO_POSITION || position < mFirstPosition) {
+                mFirstPosition = position;
+            }
+            if (position > mLastPosition) {
+                mLastPosition = position;
+            }
+
+            addSection(((LayoutManager.LayoutParams) child.getLayoutParams())
+                    .getTestedFirstPosition());
+        }
+    }
+
+    /**
+     * Add a section to the sorted set of visible sections.
+     */
+    private void addSection(int sfp) {
+        int index = Arrays.binarySearch(mSections, 0, mSectionCount, sfp);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        System.arraycopy(mSections, index, mSections, index + 1, mSectionCount - index);
+        mSections[index] = sfp;
+        mSectionCount += 1;
+    }
+
+    private void checkItem(int index) {
+        if (index < 0 || index >= mItemCount) {
+            throw new IndexOutOfBoundsException(
+                    "Item " + index + " is not within 0 - " + mItemCount + ".");
+        }
+    }
+}
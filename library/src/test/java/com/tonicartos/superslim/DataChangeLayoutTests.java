@@ -0,0 +1,126 @@
+package com.tonicartos.superslim;
+
+import com.tonicartos.superslim.util.SectionedTestAdapter;
+import com.tonicartos.superslim.util.Utils;
+import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import android.app.Activity;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.assertj.android.api.Assertions.assertThat;
+
+/**
+ * End-to-end tests for binding and laying out again after the adapter's data changes or a fling
+ * settles.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class DataChangeLayoutTests {
+
+    private static final int ITEM_HEIGHT = 100;
+
+    private Activity mActivity;
+
+    private RecyclerView mRecyclerView;
+
+    private LayoutManagerWrapper mLayoutManager;
+
+    @Before
+    public void setup() {
+        ShadowLog.stream = System.out;
+        mActivity = Robolectric.buildActivity(Activity.class).create().get();
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+    }
+
+    @Test
+    public void test_anchorFollowsIdAfterInsertAbove() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(30, ITEM_HEIGHT, -1);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        mRecyclerView.scrollBy(0, 250);
+        assertThat(mLayoutManager.findViewByPosition(2)).hasTop(-50);
+
+        // Prepend a page of items and report it as a full change.
+        adapter.addItems(0, 0, 5);
+        adapter.notifySectionsChanged();
+        relayout();
+
+        // The item that was at the top stays there at its new position.
+        assertThat(mLayoutManager.findViewByPosition(7)).hasTop(-50).hasBottom(50);
+        assertNull(mLayoutManager.findViewByPosition(2));
+    }
+
+    @Test
+    public void test_lightlyBoundViewsBoundAgainOnSettle() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(50, ITEM_HEIGHT, -1);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        mLayoutManager.onAttachedToWindow(mRecyclerView);
+        mLayoutManager.setLightweightBindVelocity(1);
+
+        // The first frame of the fling has no velocity yet, the second is fast.
+        mLayoutManager.onScrollStateChanged(RecyclerView.SCROLL_STATE_SETTLING);
+        mRecyclerView.scrollBy(0, 50);
+        adapter.clearBinds();
+        mRecyclerView.scrollBy(0, 200);
+        assertEquals(Arrays.asList(14, 15), adapter.lightlyBoundPositions);
+        assertTrue(((LayoutManager.LayoutParams) mLayoutManager.findViewByPosition(15)
+                .getLayoutParams()).isBoundLightly());
+
+        adapter.clearBinds();
+        mLayoutManager.onScrollStateChanged(RecyclerView.SCROLL_STATE_IDLE);
+        relayout();
+
+        // Once settled, the views bound lightly are bound again in full.
+        assertTrue(adapter.boundPositions.contains(14));
+        assertTrue(adapter.boundPositions.contains(15));
+        assertTrue(adapter.lightlyBoundPositions.isEmpty());
+        assertFalse(((LayoutManager.LayoutParams) mLayoutManager.findViewByPosition(15)
+                .getLayoutParams()).isBoundLightly());
+    }
+
+    @Test
+    public void test_prefetchedViewsBoundAgainAfterChange() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(50, ITEM_HEIGHT, -1);
+        mLayoutManager.setFrameBudget(1000);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        // Filling to the end edge binds 13, and the rest of the budget binds two views ahead.
+        adapter.clearBinds();
+        mRecyclerView.scrollBy(0, 50);
+        assertTrue(adapter.boundPositions.contains(14));
+        assertTrue(adapter.boundPositions.contains(15));
+        assertFalse(adapter.boundPositions.contains(16));
+
+        adapter.notifySectionItemRangeChanged(0, 14, 2);
+        relayout();
+        adapter.clearBinds();
+        mRecyclerView.scrollBy(0, 250);
+
+        // The views bound ahead before the change are not used as they were.
+        assertThat(mLayoutManager.findViewByPosition(15)).hasTop(1200);
+        assertTrue(adapter.boundPositions.contains(14));
+        assertTrue(adapter.boundPositions.contains(15));
+    }
+
+    private void relayout() {
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+    }
+}
@@ -0,0 +1,164 @@
+package com.tonicartos.superslim;
+
+import com.tonicartos.superslim.util.Utils;
+import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import android.app.Activity;
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.android.api.Assertions.assertThat;
+
+/**
+ * End-to-end tests for a Layout Manager and FlowSLM combination.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class FlowLayoutTests {
+
+    private static final int ITEM_HEIGHT = 100;
+
+    private Activity mActivity;
+
+    private RecyclerView mRecyclerView;
+
+    private LayoutManagerWrapper mLayoutManager;
+
+    @Before
+    public void setup() {
+        ShadowLog.stream = System.out;
+        mActivity = Robolectric.buildActivity(Activity.class).create().get();
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+    }
+
+    @Test
+    public void test_insertRewrapsLine() {
+        FlowAdapter adapter = new FlowAdapter(mActivity, 60, 400, 300, 200);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        assertThat(mLayoutManager.findViewByPosition(5)).hasLeft(0).hasTop(300);
+
+        // A narrow item now fits on the end of the second line.
+        adapter.insertItem(4, 100);
+        relayout();
+
+        assertThat(mLayoutManager.findViewByPosition(4)).hasLeft(200).hasTop(200);
+        assertThat(mLayoutManager.findViewByPosition(5)).hasLeft(600).hasRight(700).hasTop(200);
+        assertThat(mLayoutManager.findViewByPosition(6)).hasLeft(0).hasTop(300);
+    }
+
+    @Test
+    public void test_linesWrap() {
+        Utils.setupLayoutTest(null, new FlowAdapter(mActivity, 60, 400, 300, 200),
+                mLayoutManager, mRecyclerView);
+
+        // 400 + 300 fills the first line, so the 200 wide item starts the second.
+        assertThat(mLayoutManager.findViewByPosition(0)).hasTop(0).hasBottom(ITEM_HEIGHT);
+        assertThat(mLayoutManager.findViewByPosition(1)).hasLeft(0).hasTop(100);
+        assertThat(mLayoutManager.findViewByPosition(2)).hasLeft(400).hasRight(700).hasTop(100);
+        assertThat(mLayoutManager.findViewByPosition(3)).hasLeft(0).hasRight(200).hasTop(200);
+        assertThat(mLayoutManager.findViewByPosition(4)).hasLeft(200).hasTop(200);
+        assertThat(mLayoutManager.findViewByPosition(5)).hasLeft(0).hasTop(300);
+        assertThat(mLayoutManager.findViewByPosition(6)).hasLeft(300).hasTop(300);
+    }
+
+    @Test
+    public void test_scrollBackToStartAcrossPartialLine() {
+        Utils.setupLayoutTest(null, new FlowAdapter(mActivity, 60, 400, 300, 200),
+                mLayoutManager, mRecyclerView);
+
+        // Leave the tenth line, positions 19 and 20, half scrolled off the top.
+        mRecyclerView.scrollBy(0, 1050);
+        assertThat(mLayoutManager.findViewByPosition(19)).hasLeft(0).hasTop(-50);
+        assertThat(mLayoutManager.findViewByPosition(20)).hasLeft(400).hasTop(-50);
+
+        mRecyclerView.scrollBy(0, -1050);
+        assertThat(mLayoutManager.findViewByPosition(0)).hasTop(0);
+        assertThat(mLayoutManager.findViewByPosition(1)).hasLeft(0).hasTop(100);
+        assertThat(mLayoutManager.findViewByPosition(2)).hasLeft(400).hasTop(100);
+        assertThat(mLayoutManager.findViewByPosition(3)).hasLeft(0).hasTop(200);
+    }
+
+    private void relayout() {
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+    }
+
+    /**
+     * A single flow section with a header. Items have fixed widths, repeating the given pattern.
+     */
+    private static class FlowAdapter extends SectionedAdapter<RecyclerView.ViewHolder> {
+
+        private final Context mContext;
+
+        private final List<Integer> mWidths = new ArrayList<>();
+
+        FlowAdapter(Context context, int itemCount, int... widthPattern) {
+            mContext = context;
+            for (int i = 0; i < itemCount; i++) {
+                mWidths.add(widthPattern[i % widthPattern.length]);
+            }
+        }
+
+        void insertItem(int index, int width) {
+            mWidths.add(index, width);
+            notifySectionItemRangeInserted(0, index, 1);
+        }
+
+        @Override
+        public int getSectionCount() {
+            return 1;
+        }
+
+        @Override
+        public int getSectionItemCount(int section) {
+            return mWidths.size();
+        }
+
+        @Override
+        public boolean hasSectionHeader(int section) {
+            return true;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new View(mContext);
+            view.setLayoutParams(new LayoutManager.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(RecyclerView.ViewHolder holder, int section) {
+            LayoutManager.LayoutParams params =
+                    (LayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+            params.setSlm(FlowSLM.ID);
+            params.headerDisplay = LayoutManager.LayoutParams.HEADER_INLINE;
+            params.width = ViewGroup.LayoutParams.MATCH_PARENT;
+            holder.itemView.setMinimumHeight(ITEM_HEIGHT);
+        }
+
+        @Override
+        public void onBindItemViewHolder(RecyclerView.ViewHolder holder, int section, int index) {
+            LayoutManager.LayoutParams params =
+                    (LayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+            params.setSlm(FlowSLM.ID);
+            params.width = mWidths.get(index);
+            holder.itemView.setMinimumHeight(ITEM_HEIGHT);
+        }
+    }
+}
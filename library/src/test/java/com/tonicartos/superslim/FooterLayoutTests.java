@@ -0,0 +1,219 @@
+package com.tonicartos.superslim;
+
+import com.tonicartos.superslim.util.TestAdapterBuilder;
+import com.tonicartos.superslim.util.Utils;
+import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import android.app.Activity;
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static org.assertj.android.api.Assertions.assertThat;
+
+/**
+ * End-to-end tests for inline and sticky section footers.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class FooterLayoutTests {
+
+    private static final int ITEM_HEIGHT = 100;
+
+    private static final int FOOTER_HEIGHT = 50;
+
+    private Activity mActivity;
+
+    private RecyclerView mRecyclerView;
+
+    private LayoutManagerWrapper mLayoutManager;
+
+    @Before
+    public void setup() {
+        ShadowLog.stream = System.out;
+        mActivity = Robolectric.buildActivity(Activity.class).create().get();
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+    }
+
+    @Test
+    public void test_inlineFooterFollowsContent() {
+        // Section: [h 1 2 3 4 5 f]
+        RecyclerView.Adapter adapter = new TestAdapterBuilder()
+                .addLinearSection(7, Utils.RV_WIDTH, ITEM_HEIGHT,
+                        TestAdapterBuilder.Header.with(TestAdapterBuilder.Header.NONSTICKY),
+                        TestAdapterBuilder.Footer.inline(FOOTER_HEIGHT))
+                .addLinearSection(20, Utils.RV_WIDTH, ITEM_HEIGHT, null)
+                .build(mActivity);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        assertThat(mLayoutManager.findViewByPosition(6)).hasTop(600).hasBottom(650);
+        assertThat(mLayoutManager.findViewByPosition(7)).hasTop(650);
+    }
+
+    @Test
+    public void test_inlineFooterScrollConsistency() {
+        RecyclerView.Adapter adapter = new TestAdapterBuilder()
+                .addLinearSection(7, Utils.RV_WIDTH, ITEM_HEIGHT,
+                        TestAdapterBuilder.Header.with(TestAdapterBuilder.Header.INLINE),
+                        TestAdapterBuilder.Footer.inline(FOOTER_HEIGHT))
+                .addLinearSection(12, Utils.RV_WIDTH, ITEM_HEIGHT, null,
+                        TestAdapterBuilder.Footer.inline(FOOTER_HEIGHT))
+                .addLinearSection(7, Utils.RV_WIDTH, ITEM_HEIGHT,
+                        TestAdapterBuilder.Header.with(TestAdapterBuilder.Header.INLINE),
+                        TestAdapterBuilder.Footer.inline(FOOTER_HEIGHT))
+                .build(mActivity);
+
+        Utils.doScrollConsistencyTest(25, 1000, null, adapter, mLayoutManager, mRecyclerView);
+    }
+
+    @Test
+    public void test_inlineFooterScrolledPast() {
+        RecyclerView.Adapter adapter = new TestAdapterBuilder()
+                .addLinearSection(7, Utils.RV_WIDTH, ITEM_HEIGHT,
+                        TestAdapterBuilder.Header.with(TestAdapterBuilder.Header.NONSTICKY),
+                        TestAdapterBuilder.Footer.inline(FOOTER_HEIGHT))
+                .addLinearSection(20, Utils.RV_WIDTH, ITEM_HEIGHT, null)
+                .build(mActivity);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        mRecyclerView.scrollBy(0, 620);
+        assertThat(mLayoutManager.findViewByPosition(6)).hasTop(-20);
+
+        mRecyclerView.scrollBy(0, 40);
+        assertNull(mLayoutManager.findViewByPosition(6));
+        assertThat(mLayoutManager.findViewByPosition(7)).hasTop(-10);
+
+        mRecyclerView.scrollBy(0, -60);
+        assertThat(mLayoutManager.findViewByPosition(6)).hasTop(0).hasBottom(50);
+    }
+
+    @Test
+    public void test_stickyFooterHeldAtEnd() {
+        Utils.setupLayoutTest(null, new StickyFooterAdapter(mActivity), mLayoutManager,
+                mRecyclerView);
+
+        assertThat(mLayoutManager.findViewByPosition(21))
+                .hasTop(Utils.RV_HEIGHT - FOOTER_HEIGHT)
+                .hasBottom(Utils.RV_HEIGHT);
+        // The content under the footer is still laid out, up to the end edge.
+        assertThat(mLayoutManager.findViewByPosition(12)).hasTop(1200);
+        assertNull(mLayoutManager.findViewByPosition(13));
+    }
+
+    @Test
+    public void test_stickyFooterHeldAboveBottomPadding() {
+        final int padding = 40;
+        Utils.setupLayoutTest(new int[]{0, 0, 0, padding}, new StickyFooterAdapter(mActivity),
+                mLayoutManager, mRecyclerView);
+
+        assertThat(mLayoutManager.findViewByPosition(21))
+                .hasBottom(Utils.RV_HEIGHT - padding);
+    }
+
+    @Test
+    public void test_stickyFooterScrolledIntoSection() {
+        Utils.setupLayoutTest(null, new StickyFooterAdapter(mActivity), mLayoutManager,
+                mRecyclerView);
+
+        mRecyclerView.scrollBy(0, 500);
+        assertThat(mLayoutManager.findViewByPosition(21)).hasBottom(Utils.RV_HEIGHT);
+        // Filling carries on from the content, not from the footer.
+        assertThat(mLayoutManager.findViewByPosition(17)).hasTop(1200);
+        assertNull(mLayoutManager.findViewByPosition(18));
+        assertNull(mLayoutManager.findViewByPosition(22));
+
+        mRecyclerView.scrollBy(0, -500);
+        assertThat(mLayoutManager.findViewByPosition(21)).hasBottom(Utils.RV_HEIGHT);
+        assertThat(mLayoutManager.findViewByPosition(12)).hasTop(1200);
+    }
+
+    @Test
+    public void test_stickyFooterScrolledPastSectionEnd() {
+        Utils.setupLayoutTest(null, new StickyFooterAdapter(mActivity), mLayoutManager,
+                mRecyclerView);
+
+        // Scroll a frame at a time, so the footer is stuck and released on the way.
+        for (int i = 0; i < 15; i++) {
+            mRecyclerView.scrollBy(0, 100);
+        }
+
+        // The section's content ends at 2100, so the footer follows it there.
+        View footer = mLayoutManager.findViewByPosition(21);
+        assertNotNull(footer);
+        assertThat(footer).hasTop(600).hasBottom(650);
+        assertThat(mLayoutManager.findViewByPosition(20)).hasBottom(600);
+        assertThat(mLayoutManager.findViewByPosition(22)).hasTop(650);
+    }
+
+    /**
+     * Two sections with headers. The first has 20 items and a sticky footer, the second 20 items
+     * and no footer.
+     */
+    private static class StickyFooterAdapter extends SectionedAdapter<RecyclerView.ViewHolder> {
+
+        private final Context mContext;
+
+        StickyFooterAdapter(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public int getSectionCount() {
+            return 2;
+        }
+
+        @Override
+        public int getSectionItemCount(int section) {
+            return section == 0 ? 21 : 20;
+        }
+
+        @Override
+        public boolean hasSectionHeader(int section) {
+            return true;
+        }
+
+        @Override
+        public boolean hasSectionFooter(int section) {
+            return section == 0;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new View(mContext);
+            view.setLayoutParams(new LayoutManager.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(RecyclerView.ViewHolder holder, int section) {
+            holder.itemView.setMinimumHeight(ITEM_HEIGHT);
+        }
+
+        @Override
+        public void onBindItemViewHolder(RecyclerView.ViewHolder holder, int section, int index) {
+            LayoutManager.LayoutParams params =
+                    (LayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+            if (params.isFooter) {
+                params.footerDisplay = LayoutManager.LayoutParams.FOOTER_STICKY;
+                holder.itemView.setMinimumHeight(FOOTER_HEIGHT);
+            } else {
+                params.footerDisplay = LayoutManager.LayoutParams.FOOTER_INLINE;
+                holder.itemView.setMinimumHeight(ITEM_HEIGHT);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.tonicartos.superslim;
 
+import com.tonicartos.superslim.util.SectionedTestAdapter;
 import com.tonicartos.superslim.util.TestAdapterBuilder;
 import com.tonicartos.superslim.util.Utils;
 import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
@@ -15,6 +16,11 @@ import org.robolectric.shadows.ShadowLog;
 import android.app.Activity;
 import android.support.v7.widget.RecyclerView;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static junit.framework.Assert.assertEquals;
 
 /**
@@ -38,6 +44,36 @@ public class GridLayoutTests {
         mLayoutManager = new LayoutManagerWrapper(mActivity);
     }
 
+    @Test
+    public void test_columnsKeptOutsideChangedRange() {
+        final List<Integer> resolved = new ArrayList<>();
+        mLayoutManager.getGridSlm().setOnColumnsResolvedListener(
+                new GridSLM.OnColumnsResolvedListener() {
+                    @Override
+                    public void onColumnsResolved(int sectionFirstPosition, int numColumns,
+                            int columnWidth) {
+                        resolved.add(sectionFirstPosition);
+                    }
+                });
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(3, 100, LayoutManager.LayoutParams.HEADER_INLINE, GridSLM.ID, 0)
+                .addSection(3, 100, LayoutManager.LayoutParams.HEADER_INLINE, GridSLM.ID, 0)
+                .addSection(3, 100, LayoutManager.LayoutParams.HEADER_INLINE, GridSLM.ID, 0);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        assertEquals(Arrays.asList(0, 4, 8), resolved);
+
+        // Insert into the middle section, moving only the last section.
+        resolved.clear();
+        adapter.addItems(1, 1, 1);
+        adapter.notifySectionItemRangeInserted(1, 1, 1);
+        relayout();
+
+        assertEquals(Collections.singletonList(9), resolved);
+        assertEquals(1, mLayoutManager.getGridSlm().getColumnCount(0));
+        assertEquals(Utils.RV_WIDTH, mLayoutManager.getGridSlm().getColumnWidth(4));
+        assertEquals(-1, mLayoutManager.getGridSlm().getColumnCount(8));
+    }
+
     @Test
     public void test_findFirstCompletelyVisibleItem() {
         RecyclerView.Adapter adapter = new TestAdapterBuilder()
@@ -312,7 +348,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollAfterStartAfterEnd() throws Exception {
+    public void test_overscrollAfterStartAfterEnd() {
         final int padding = 20;
         final int numItems = 1;
         final int dy = 100;
@@ -334,7 +370,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollAfterStartAtEnd() throws Exception {
+    public void test_overscrollAfterStartAtEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -348,7 +384,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollAfterStartBeforeEnd() throws Exception {
+    public void test_overscrollAfterStartBeforeEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -362,7 +398,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollAtStartAfterEnd() throws Exception {
+    public void test_overscrollAtStartAfterEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -376,7 +412,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollAtStartAtEnd() throws Exception {
+    public void test_overscrollAtStartAtEnd() {
         final int numItems = 1;
         RecyclerView.Adapter adapter;
         int[] layoutPadding;
@@ -389,7 +425,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollAtStartBeforeEnd() throws Exception {
+    public void test_overscrollAtStartBeforeEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -403,7 +439,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollBeforeStartAfterEnd() throws Exception {
+    public void test_overscrollBeforeStartAfterEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -417,7 +453,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollBeforeStartAtEnd() throws Exception {
+    public void test_overscrollBeforeStartAtEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -431,7 +467,7 @@ public class GridLayoutTests {
     }
 
     @Test
-    public void test_overscrollBeforeStartBeforeEnd() throws Exception {
+    public void test_overscrollBeforeStartBeforeEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -444,6 +480,33 @@ public class GridLayoutTests {
                 mRecyclerView);
     }
 
+    @Test
+    public void test_poolNotSizedWhenDisabled() {
+        mLayoutManager.setRecycledViewPoolSizing(false);
+        RecyclerView.Adapter adapter = new TestAdapterBuilder()
+                .addGridSection(60, Utils.RV_WIDTH, 100, null)
+                .build(mActivity);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        mLayoutManager.onAttachedToWindow(mRecyclerView);
+        relayout();
+
+        assertEquals(5, countPoolCapacity(adapter, 0));
+    }
+
+    @Test
+    public void test_poolSizedForScreenAndRow() {
+        RecyclerView.Adapter adapter = new TestAdapterBuilder()
+                .addGridSection(60, Utils.RV_WIDTH, 100, null)
+                .build(mActivity);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        mLayoutManager.onAttachedToWindow(mRecyclerView);
+        relayout();
+
+        // 13 rows of 3 are on screen, and the pool holds them plus a row.
+        assertEquals(39, mLayoutManager.getChildCount());
+        assertEquals(42, countPoolCapacity(adapter, 0));
+    }
+
     @Test
     public void test_scroll() {
         final int numItems = 10;
@@ -480,4 +543,26 @@ public class GridLayoutTests {
         Utils.doScrollConsistencyTest(
                 stepSize, maxSteps, layoutPadding, adapter, mLayoutManager, mRecyclerView);
     }
+
+    /**
+     * Fill the recycled view pool with more views of a type than it can hold, and count how many
+     * it kept.
+     */
+    private int countPoolCapacity(RecyclerView.Adapter adapter, int viewType) {
+        RecyclerView.RecycledViewPool pool = mRecyclerView.getRecycledViewPool();
+        pool.clear();
+        for (int i = 0; i < 100; i++) {
+            pool.putRecycledView(adapter.createViewHolder(mRecyclerView, viewType));
+        }
+        int count = 0;
+        while (pool.getRecycledView(viewType) != null) {
+            count += 1;
+        }
+        return count;
+    }
+
+    private void relayout() {
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+    }
 }
@@ -0,0 +1,96 @@
+package com.tonicartos.superslim;
+
+import com.tonicartos.superslim.util.SectionedTestAdapter;
+import com.tonicartos.superslim.util.SectionedTestAdapter.CountingView;
+import com.tonicartos.superslim.util.Utils;
+import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import android.app.Activity;
+import android.support.v7.widget.RecyclerView;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static org.assertj.android.api.Assertions.assertThat;
+
+/**
+ * End-to-end tests for section headers.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class HeaderLayoutTests {
+
+    private static final int ITEM_HEIGHT = 100;
+
+    private static final int STICKY = LayoutManager.LayoutParams.HEADER_INLINE
+            | LayoutManager.LayoutParams.HEADER_STICKY;
+
+    private Activity mActivity;
+
+    private RecyclerView mRecyclerView;
+
+    private LayoutManagerWrapper mLayoutManager;
+
+    @Before
+    public void setup() {
+        ShadowLog.stream = System.out;
+        mActivity = Robolectric.buildActivity(Activity.class).create().get();
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+    }
+
+    @Test
+    public void test_nestedHeaderStacksBelowParent() {
+        mLayoutManager.setStackedHeadersEnabled(true);
+        // A parent section at positions 0 - 2 with a nested section from position 3.
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(2, ITEM_HEIGHT, STICKY, LinearSLM.ID, 0)
+                .addSection(30, ITEM_HEIGHT, STICKY, LinearSLM.ID, 1);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        mRecyclerView.scrollBy(0, 350);
+
+        // The parent's header is stacked at the top, and the nested header sticks below it.
+        assertThat(mLayoutManager.findViewByPosition(3)).hasTop(ITEM_HEIGHT)
+                .hasBottom(2 * ITEM_HEIGHT);
+        assertThat(mLayoutManager.findViewByPosition(4)).hasTop(50);
+    }
+
+    @Test
+    public void test_nestedHeaderNotStackedByDefault() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(2, ITEM_HEIGHT, STICKY, LinearSLM.ID, 0)
+                .addSection(30, ITEM_HEIGHT, STICKY, LinearSLM.ID, 1);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        mRecyclerView.scrollBy(0, 350);
+
+        assertThat(mLayoutManager.findViewByPosition(3)).hasTop(0).hasBottom(ITEM_HEIGHT);
+    }
+
+    @Test
+    public void test_stuckHeaderMeasuredOnceWhileScrolling() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(30, ITEM_HEIGHT, STICKY);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        mRecyclerView.scrollBy(0, 10);
+        CountingView header = (CountingView) mLayoutManager.findViewByPosition(0);
+        final int measureCount = header.measureCount;
+
+        for (int i = 0; i < 20; i++) {
+            mRecyclerView.scrollBy(0, 10);
+        }
+
+        // The header is moved every frame, but its measurement is reused.
+        assertSame(header, mLayoutManager.findViewByPosition(0));
+        assertThat(header).hasTop(0).hasBottom(ITEM_HEIGHT);
+        assertEquals(measureCount, header.measureCount);
+    }
+}
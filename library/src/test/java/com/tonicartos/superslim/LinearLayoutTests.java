@@ -1,5 +1,7 @@
 package com.tonicartos.superslim;
 
+import com.tonicartos.superslim.util.SectionedTestAdapter;
+import com.tonicartos.superslim.util.SectionedTestAdapter.CountingView;
 import com.tonicartos.superslim.util.TestAdapterBuilder;
 import com.tonicartos.superslim.util.Utils;
 import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
@@ -13,10 +15,15 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 
 import android.app.Activity;
+import android.graphics.Rect;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.view.View;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static org.assertj.android.api.Assertions.assertThat;
 
 /**
  * End-to-end tests for a Layout Manager and LinearSLM combination.
@@ -285,7 +292,32 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollAfterStartAfterEnd() throws Exception {
+    public void test_heightChangeKeepsChildren() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(30, 100, -1);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        mRecyclerView.scrollBy(0, 250);
+        CountingView kept = (CountingView) mLayoutManager.findViewByPosition(5);
+        final int measureCount = kept.measureCount;
+
+        // Shrink, as when the soft keyboard opens. Children past the new end are trimmed.
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, 800);
+        assertSame(kept, mLayoutManager.findViewByPosition(5));
+        assertThat(kept).hasTop(250);
+        assertThat(mLayoutManager.findViewByPosition(10)).hasTop(750);
+        assertNull(mLayoutManager.findViewByPosition(11));
+
+        // Grow back. The gap at the end is filled.
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+        assertSame(kept, mLayoutManager.findViewByPosition(5));
+        assertThat(mLayoutManager.findViewByPosition(15)).hasTop(1250);
+
+        // The children that stayed were not laid out again.
+        assertEquals(measureCount, kept.measureCount);
+    }
+
+    @Test
+    public void test_overscrollAfterStartAfterEnd() {
         final int padding = 20;
         final int numItems = 1;
         final int dy = 100;
@@ -307,7 +339,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollAfterStartAtEnd() throws Exception {
+    public void test_overscrollAfterStartAtEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -321,7 +353,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollAfterStartBeforeEnd() throws Exception {
+    public void test_overscrollAfterStartBeforeEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -335,7 +367,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollAtStartAfterEnd() throws Exception {
+    public void test_overscrollAtStartAfterEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -349,7 +381,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollAtStartAtEnd() throws Exception {
+    public void test_overscrollAtStartAtEnd() {
         final int numItems = 1;
         RecyclerView.Adapter adapter;
         int[] layoutPadding;
@@ -362,7 +394,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollAtStartBeforeEnd() throws Exception {
+    public void test_overscrollAtStartBeforeEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -376,7 +408,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollBeforeStartAfterEnd() throws Exception {
+    public void test_overscrollBeforeStartAfterEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -390,7 +422,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollBeforeStartAtEnd() throws Exception {
+    public void test_overscrollBeforeStartAtEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -404,7 +436,7 @@ public class LinearLayoutTests {
     }
 
     @Test
-    public void test_overscrollBeforeStartBeforeEnd() throws Exception {
+    public void test_overscrollBeforeStartBeforeEnd() {
         final int numItems = 1;
         final int dy = 100;
         RecyclerView.Adapter adapter;
@@ -417,6 +449,32 @@ public class LinearLayoutTests {
                 mRecyclerView);
     }
 
+    @Test
+    public void test_stickyHeaderTakesNewDecorationInsets() {
+        RecyclerView.Adapter adapter = new TestAdapterBuilder()
+                .addLinearSection(20, Utils.RV_WIDTH, 100,
+                        TestAdapterBuilder.Header.with(TestAdapterBuilder.Header.INLINE))
+                .build(mActivity);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        mRecyclerView.scrollBy(0, 250);
+
+        mRecyclerView.addItemDecoration(new RecyclerView.ItemDecoration() {
+            @Override
+            public void getItemOffsets(Rect outRect, View view, RecyclerView parent,
+                    RecyclerView.State state) {
+                outRect.set(0, 20, 0, 0);
+            }
+        });
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+        for (int i = 0; i < 5; i++) {
+            mRecyclerView.scrollBy(0, 10);
+        }
+
+        // The stuck header is placed inside its new inset, not just moved with the old one.
+        assertThat(mLayoutManager.findViewByPosition(0)).hasTop(20).hasBottom(120);
+    }
+
     @Test
     public void test_scroll() {
         final int numItems = 10;
@@ -453,4 +511,38 @@ public class LinearLayoutTests {
         Utils.doScrollConsistencyTest(
                 stepSize, maxSteps, layoutPadding, adapter, mLayoutManager, mRecyclerView);
     }
+
+    @Test
+    public void test_stackFromEndLaysOutFromEnd() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(30, 100, -1);
+        mLayoutManager.setStackFromEnd(true);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        // Only what fits above the last item is laid out.
+        assertThat(mLayoutManager.findViewByPosition(29)).hasBottom(Utils.RV_HEIGHT);
+        assertThat(mLayoutManager.findViewByPosition(17)).hasTop(-20);
+        assertNull(mLayoutManager.findViewByPosition(16));
+        assertEquals(13, mLayoutManager.getChildCount());
+
+        mRecyclerView.scrollBy(0, -100);
+        assertThat(mLayoutManager.findViewByPosition(16)).hasTop(-20);
+        assertThat(mLayoutManager.findViewByPosition(28)).hasBottom(Utils.RV_HEIGHT);
+    }
+
+    @Test
+    public void test_stackFromEndSetAfterLayout() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(5, 100, -1);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        assertThat(mLayoutManager.findViewByPosition(0)).hasTop(0);
+
+        // Laid out again in full, even though the height changes too.
+        mLayoutManager.setStackFromEnd(true);
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, 1000);
+
+        assertThat(mLayoutManager.findViewByPosition(0)).hasTop(500);
+        assertThat(mLayoutManager.findViewByPosition(4)).hasBottom(1000);
+    }
 }
@@ -0,0 +1,134 @@
+package com.tonicartos.superslim;
+
+import com.tonicartos.superslim.util.SectionedTestAdapter;
+import com.tonicartos.superslim.util.Utils;
+import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.app.Activity;
+import android.graphics.Rect;
+import android.support.v7.widget.RecyclerView;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+/**
+ * End-to-end tests for what the layout manager publishes to listeners after layout and scroll.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ListenerLayoutTests {
+
+    private static final int ITEM_HEIGHT = 100;
+
+    private Activity mActivity;
+
+    private RecyclerView mRecyclerView;
+
+    private LayoutManagerWrapper mLayoutManager;
+
+    @Before
+    public void setup() {
+        ShadowLog.stream = System.out;
+        mActivity = Robolectric.buildActivity(Activity.class).create().get();
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+    }
+
+    @Test
+    public void test_approachingEndSkipsCollapsedContent() {
+        final int[] approached = new int[]{-1};
+        mLayoutManager.setOnApproachingEndListener(new LayoutManager.OnApproachingEndListener() {
+            @Override
+            public void onApproachingEnd(int itemCount) {
+                approached[0] = itemCount;
+            }
+        }, 15, 0);
+        // Positions 0 - 20, a collapsed section 21 - 121, and a short last section 122 - 124.
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(20, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE)
+                .addSection(100, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE)
+                .addSection(2, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE);
+        adapter.setSectionCollapsed(1, true);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        // Only the 12 visible positions after 12 count, not the 112 adapter positions.
+        assertEquals(12, mLayoutManager.findLastVisibleItemPosition());
+        assertEquals(125, approached[0]);
+    }
+
+    @Test
+    public void test_sectionBoundsFollowScroll() {
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(10, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE)
+                .addSection(10, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE)
+                .addSection(10, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        SectionBounds bounds = mLayoutManager.getSectionBounds();
+        Rect rect = new Rect();
+        assertEquals(2, bounds.getSectionCount());
+        assertEquals(new Rect(0, 0, Utils.RV_WIDTH, 1100), bounds.getBounds(0, rect));
+        assertEquals(11, bounds.getSectionFirstPosition(1));
+        assertEquals(new Rect(0, 1100, Utils.RV_WIDTH, 1300), bounds.getBounds(1, rect));
+
+        mRecyclerView.scrollBy(0, 250);
+
+        // The same bounds are gathered again from the scrolled children.
+        assertSame(bounds, mLayoutManager.getSectionBounds());
+        assertEquals(2, bounds.getSectionCount());
+        assertEquals(new Rect(0, -50, Utils.RV_WIDTH, 850), bounds.getBounds(0, rect));
+        assertEquals(1, bounds.indexOfSection(11));
+        assertEquals(new Rect(0, 850, Utils.RV_WIDTH, 1350), bounds.getBounds(1, rect));
+        assertEquals(-1, bounds.indexOfSection(22));
+    }
+
+    @Test
+    public void test_visibleRangePublishedOnScroll() {
+        final VisibleRange[] published = new VisibleRange[1];
+        final int[] calls = new int[1];
+        mLayoutManager.addOnVisibleRangeChangedListener(
+                new LayoutManager.OnVisibleRangeChangedListener() {
+                    @Override
+                    public void onVisibleRangeChanged(VisibleRange range) {
+                        published[0] = range;
+                        calls[0] += 1;
+                    }
+                });
+        SectionedTestAdapter adapter = new SectionedTestAdapter(mActivity)
+                .addSection(10, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE)
+                .addSection(10, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE)
+                .addSection(10, ITEM_HEIGHT, LayoutManager.LayoutParams.HEADER_INLINE);
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        VisibleRange range = published[0];
+        assertEquals(0, range.getFirstVisiblePosition());
+        assertEquals(12, range.getLastVisiblePosition());
+        assertEquals(13, range.getVisibleItemCount());
+        assertEquals(0.8f, range.getVisibleFractionForPosition(12), 0.001f);
+        assertEquals(2, range.getVisibleSectionCount());
+        assertEquals(11, range.getSectionFirstPosition(1));
+
+        final int callsBefore = calls[0];
+        mRecyclerView.scrollBy(0, 250);
+
+        // The same snapshot is updated and published again.
+        assertEquals(callsBefore + 1, calls[0]);
+        assertSame(range, published[0]);
+        assertEquals(2, range.getFirstVisiblePosition());
+        assertEquals(15, range.getLastVisiblePosition());
+        assertEquals(0.5f, range.getVisibleFractionForPosition(2), 0.001f);
+        assertEquals(0.3f, range.getVisibleFractionForPosition(15), 0.001f);
+        assertEquals(0f, range.getVisibleFractionForPosition(1), 0.001f);
+        assertEquals(0, range.getSectionFirstPosition(0));
+    }
+}
@@ -0,0 +1,218 @@
+package com.tonicartos.superslim;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Tests for calculating differences between sectioned data sets.
+ */
+public class SectionDiffTests {
+
+    private static final String INSERTED = "?";
+
+    private static final SectionDiff.Callback<Section, String> CALLBACK
+            = new SectionDiff.Callback<Section, String>() {
+        @Override
+        public boolean areHeadersTheSame(Section oldSection, Section newSection) {
+            return oldSection.title.equals(newSection.title);
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public Object getItemId(String item) {
+            return item.substring(0, item.indexOf(':'));
+        }
+
+        @Override
+        public List<String> getItems(Section section) {
+            return section.items;
+        }
+
+        @Override
+        public Object getSectionId(Section section) {
+            return section.id;
+        }
+
+        @Override
+        public boolean hasHeader(Section section) {
+            return section.title != null;
+        }
+    };
+
+    @Test
+    public void test_identicalDataHasNoOperations() {
+        List<Section> data = Arrays.asList(
+                new Section("a", "A", "1:x", "2:x"),
+                new Section("b", "B", "3:x"));
+
+        Recorder recorder = new Recorder(data);
+        SectionDiff.calculate(data, data, CALLBACK).dispatchUpdatesTo(recorder);
+
+        assertEquals(0, recorder.operations);
+    }
+
+    @Test
+    public void test_insertsAreBatched() {
+        List<Section> oldData = Arrays.asList(new Section("a", "A", "1:x", "4:x"));
+        List<Section> newData = Arrays.asList(new Section("a", "A", "1:x", "2:x", "3:x", "4:x"));
+
+        Recorder recorder = new Recorder(oldData);
+        SectionDiff.calculate(oldData, newData, CALLBACK).dispatchUpdatesTo(recorder);
+
+        assertEquals(1, recorder.operations);
+        recorder.assertMatches(newData);
+    }
+
+    @Test
+    public void test_manyMovesReachNewOrder() {
+        String[] oldItems = new String[300];
+        for (int i = 0; i < oldItems.length; i++) {
+            oldItems[i] = i + ":x";
+        }
+        // Reverse the items, dropping every seventh and inserting new ones between.
+        List<String> newItems = new ArrayList<>();
+        for (int i = oldItems.length - 1; i >= 0; i--) {
+            if (i % 7 == 0) {
+                continue;
+            }
+            newItems.add(oldItems[i]);
+            if (i % 11 == 0) {
+                newItems.add("new" + i + ":x");
+            }
+        }
+        List<Section> oldData = Arrays.asList(new Section("a", "A", oldItems));
+        List<Section> newData = Arrays.asList(
+                new Section("a", "A", newItems.toArray(new String[newItems.size()])));
+
+        Recorder recorder = new Recorder(oldData);
+        SectionDiff.calculate(oldData, newData, CALLBACK).dispatchUpdatesTo(recorder);
+
+        recorder.assertMatches(newData);
+    }
+
+    @Test
+    public void test_movedSectionShiftsFirstPositions() {
+        List<Section> oldData = Arrays.asList(
+                new Section("a", "A", "1:x", "2:x"),
+                new Section("b", "B", "3:x"));
+        List<Section> newData = Arrays.asList(
+                new Section("b", "B", "3:x"),
+                new Section("a", "A", "1:x", "2:x"));
+
+        Recorder recorder = new Recorder(oldData);
+        SectionDiff.Result result = SectionDiff.calculate(oldData, newData, CALLBACK);
+        result.dispatchUpdatesTo(recorder);
+
+        recorder.assertMatches(newData);
+        assertEquals(2, recorder.operations);
+        assertEquals(0, result.getFirstPositionForNewPosition(1));
+        assertEquals(2, result.getFirstPositionForNewPosition(3));
+    }
+
+    @Test
+    public void test_removalsInsertsMovesAndChanges() {
+        List<Section> oldData = Arrays.asList(
+                new Section("a", "A", "1:x", "2:x", "3:x", "4:x"),
+                new Section("b", null, "5:x", "6:x"),
+                new Section("c", "C", "7:x"));
+        List<Section> newData = Arrays.asList(
+                new Section("c", "C*", "7:x", "8:x"),
+                new Section("a", "A", "2:x", "1:y", "4:x"),
+                new Section("d", "D", "6:x", "5:x", "9:x"));
+
+        Recorder recorder = new Recorder(oldData);
+        SectionDiff.calculate(oldData, newData, CALLBACK).dispatchUpdatesTo(recorder);
+
+        recorder.assertMatches(newData);
+    }
+
+    private static List<String> flatten(List<Section> sections) {
+        List<String> flattened = new ArrayList<>();
+        for (Section section : sections) {
+            if (section.title != null) {
+                flattened.add("header:" + section.id + ":" + section.title);
+            }
+            flattened.addAll(section.items);
+        }
+        return flattened;
+    }
+
+    private static class Recorder implements SectionDiff.UpdateCallback {
+
+        final List<String> items;
+
+        int operations;
+
+        final List<Integer> changed = new ArrayList<>();
+
+        Recorder(List<Section> initial) {
+            items = flatten(initial);
+        }
+
+        void assertMatches(List<Section> expected) {
+            List<String> target = flatten(expected);
+            assertEquals(target.size(), items.size());
+            for (int i = 0; i < target.size(); i++) {
+                // Inserted and changed items are rebound, so take the new value.
+                if (INSERTED.equals(items.get(i)) || changed.contains(i)) {
+                    items.set(i, target.get(i));
+                }
+            }
+            assertEquals(target, items);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            operations += 1;
+            for (int i = position; i < position + count; i++) {
+                changed.add(i);
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            operations += 1;
+            for (int i = 0; i < count; i++) {
+                items.add(position, INSERTED);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            operations += 1;
+            items.add(toPosition, items.remove(fromPosition));
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            operations += 1;
+            for (int i = 0; i < count; i++) {
+                items.remove(position);
+            }
+        }
+    }
+
+    private static class Section {
+
+        final String id;
+
+        final String title;
+
+        final List<String> items;
+
+        Section(String id, String title, String... items) {
+            this.id = id;
+            this.title = title;
+            this.items = Arrays.asList(items);
+        }
+    }
+}
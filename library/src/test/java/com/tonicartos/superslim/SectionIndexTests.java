@@ -0,0 +1,175 @@
+package com.tonicartos.superslim;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests for the mapping between adapter positions and sections.
+ */
+public class SectionIndexTests {
+
+    private SectionIndex mIndex;
+
+    @Before
+    public void setup() {
+        mIndex = new SectionIndex();
+        // Sections: [h 0 1 2] [3 4] [h] [h 7 8 9 10]
+        mIndex.setSections(new int[]{3, 2, 0, 4}, new boolean[]{true, false, true, true});
+    }
+
+    @Test
+    public void test_addAndRemoveSections() {
+        mIndex.addSection(1, 5, true);
+        assertEquals(5, mIndex.getSectionCount());
+        assertEquals(18, mIndex.getItemCount());
+        assertEquals(4, mIndex.getFirstPosition(1));
+        assertEquals(10, mIndex.getFirstPosition(2));
+
+        mIndex.removeSection(0);
+        assertEquals(4, mIndex.getSectionCount());
+        assertEquals(14, mIndex.getItemCount());
+        assertEquals(0, mIndex.getFirstPosition(0));
+        assertEquals(1, mIndex.getSectionForPosition(6));
+    }
+
+    @Test
+    public void test_collapsedSectionsHideContent() {
+        mIndex.setCollapsed(0, true);
+        mIndex.setCollapsed(1, true);
+        assertEquals(5, mIndex.getHiddenItemCount());
+        assertFalse(mIndex.isHidden(0));
+        assertTrue(mIndex.isHidden(1));
+        assertTrue(mIndex.isHidden(4));
+        assertEquals(0, mIndex.getHiddenCountBefore(1));
+        assertEquals(2, mIndex.getHiddenCountBefore(3));
+        assertEquals(5, mIndex.getHiddenCountBefore(7));
+
+        // Collapsed headers are visible, headerless collapsed sections are skipped entirely.
+        assertEquals(0, mIndex.getNextVisiblePosition(0));
+        assertEquals(6, mIndex.getNextVisiblePosition(2));
+        assertEquals(0, mIndex.getPreviousVisiblePosition(5));
+
+        mIndex.setCollapsed(3, true);
+        assertEquals(12, mIndex.getNextVisiblePosition(8));
+        assertEquals(7, mIndex.getPreviousVisiblePosition(11));
+    }
+
+    @Test
+    public void test_collapsedSectionTracksItemCount() {
+        mIndex.setCollapsed(3, true);
+        mIndex.offsetSectionItemCount(3, 2);
+        assertEquals(6, mIndex.getHiddenItemCount());
+
+        mIndex.addSection(0, 2, true);
+        assertEquals(6, mIndex.getHiddenItemCount());
+        assertTrue(mIndex.isCollapsed(4));
+        assertFalse(mIndex.isCollapsed(0));
+
+        assertFalse(mIndex.setCollapsed(4, true));
+        mIndex.setCollapsed(4, false);
+        assertEquals(0, mIndex.getHiddenItemCount());
+    }
+
+    @Test
+    public void test_firstPositions() {
+        assertEquals(0, mIndex.getFirstPosition(0));
+        assertEquals(4, mIndex.getFirstPosition(1));
+        assertEquals(6, mIndex.getFirstPosition(2));
+        assertEquals(7, mIndex.getFirstPosition(3));
+        assertEquals(12, mIndex.getItemCount());
+    }
+
+    @Test
+    public void test_footerPositions() {
+        mIndex.setHasFooter(0, true);
+        mIndex.setHasFooter(1, true);
+        mIndex.setHasFooter(2, true);
+        assertEquals(3, mIndex.getFooterPosition(0));
+        assertEquals(5, mIndex.getFooterPosition(1));
+        // A section without content has no footer.
+        assertFalse(mIndex.hasFooter(2));
+        assertEquals(-1, mIndex.getFooterPosition(2));
+        assertEquals(-1, mIndex.getFooterPosition(3));
+
+        // The footer stays the last item as content is added, and moves with its section.
+        mIndex.offsetSectionItemCount(0, 2);
+        assertEquals(5, mIndex.getFooterPosition(0));
+        mIndex.addSection(0, 1, false);
+        assertFalse(mIndex.hasFooter(0));
+        assertEquals(6, mIndex.getFooterPosition(1));
+        mIndex.removeSection(0);
+        assertEquals(5, mIndex.getFooterPosition(0));
+    }
+
+    @Test
+    public void test_indexInSection() {
+        assertEquals(-1, mIndex.getIndexInSection(0));
+        assertEquals(2, mIndex.getIndexInSection(3));
+        assertEquals(0, mIndex.getIndexInSection(4));
+        assertEquals(-1, mIndex.getIndexInSection(6));
+        assertEquals(3, mIndex.getIndexInSection(11));
+    }
+
+    @Test
+    public void test_nestedSections() {
+        // Depths: 0 [1 [2] 1] 0
+        mIndex.setSections(new int[]{0, 1, 2, 1, 3}, new boolean[]{true, true, true, true, true},
+                new int[]{0, 1, 2, 1, 0});
+        assertEquals(-1, mIndex.getParentSection(0));
+        assertEquals(0, mIndex.getParentSection(1));
+        assertEquals(1, mIndex.getParentSection(2));
+        assertEquals(0, mIndex.getParentSection(3));
+        assertEquals(-1, mIndex.getParentSection(4));
+        assertEquals(4, mIndex.getSubtreeEnd(0));
+        assertEquals(3, mIndex.getSubtreeEnd(1));
+        assertEquals(3, mIndex.getSubtreeEnd(2));
+        assertEquals(5, mIndex.getSubtreeEnd(4));
+
+        // Removing a parent hands its children to the closest shallower section before them.
+        mIndex.removeSection(1);
+        assertEquals(0, mIndex.getParentSection(1));
+        assertEquals(2, mIndex.getSectionDepth(1));
+        assertEquals(3, mIndex.getSubtreeEnd(0));
+
+        mIndex.addSection(1, 2, true, 1);
+        assertEquals(1, mIndex.getParentSection(2));
+        assertEquals(3, mIndex.getSubtreeEnd(1));
+        assertEquals(4, mIndex.getFirstPosition(2));
+    }
+
+    @Test
+    public void test_offsetSectionItemCount() {
+        mIndex.offsetSectionItemCount(0, 2);
+        assertEquals(5, mIndex.getSectionItemCount(0));
+        assertEquals(6, mIndex.getFirstPosition(1));
+        assertEquals(9, mIndex.getFirstPosition(3));
+        assertEquals(14, mIndex.getItemCount());
+
+        mIndex.offsetSectionItemCount(1, -2);
+        assertEquals(6, mIndex.getFirstPosition(2));
+        assertEquals(2, mIndex.getSectionForPosition(6));
+    }
+
+    @Test
+    public void test_sectionForPosition() {
+        int[] expected = {0, 0, 0, 0, 1, 1, 2, 3, 3, 3, 3, 3};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], mIndex.getSectionForPosition(i));
+            assertEquals(mIndex.getFirstPosition(expected[i]),
+                    mIndex.getFirstPositionForPosition(i));
+        }
+    }
+
+    @Test
+    public void test_skipsEmptySections() {
+        mIndex.setSections(new int[]{1, 0, 0, 1}, new boolean[]{false, false, false, false});
+        assertEquals(0, mIndex.getSectionForPosition(0));
+        assertEquals(3, mIndex.getSectionForPosition(1));
+        assertTrue(mIndex.getFirstPosition(1) == mIndex.getFirstPosition(3));
+        assertFalse(mIndex.hasHeader(3));
+    }
+}
@@ -0,0 +1,220 @@
+package com.tonicartos.superslim;
+
+import com.tonicartos.superslim.util.SectionedTestAdapter.CountingView;
+import com.tonicartos.superslim.util.Utils;
+import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Parcelable;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static org.assertj.android.api.Assertions.assertThat;
+
+/**
+ * End-to-end tests for a Layout Manager and TableSLM combination.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TableLayoutTests {
+
+    private static final int ROW_HEIGHT = 100;
+
+    private Activity mActivity;
+
+    private RecyclerView mRecyclerView;
+
+    private LayoutManagerWrapper mLayoutManager;
+
+    @Before
+    public void setup() {
+        ShadowLog.stream = System.out;
+        mActivity = Robolectric.buildActivity(Activity.class).create().get();
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+    }
+
+    @Test
+    public void test_cellsMeasuredOncePerPass() {
+        Utils.setupLayoutTest(null, new TableAdapter(mActivity, 90, 3, 100, 200, 100),
+                mLayoutManager, mRecyclerView);
+        mRecyclerView.scrollBy(0, 1050);
+        mRecyclerView.scrollBy(0, -600);
+
+        Map<View, Integer> counts = new HashMap<>();
+        for (int i = 0; i < mLayoutManager.getChildCount(); i++) {
+            View child = mLayoutManager.getChildAt(i);
+            counts.put(child, ((CountingView) child).measureCount);
+        }
+        relayout();
+
+        // Rows are measured once in the pass, and laid out from the row cache.
+        assertEquals(counts.size(), mLayoutManager.getChildCount());
+        for (int i = 0; i < mLayoutManager.getChildCount(); i++) {
+            View child = mLayoutManager.getChildAt(i);
+            assertEquals(counts.get(child) + 1, ((CountingView) child).measureCount);
+        }
+    }
+
+    @Test
+    public void test_columnWeightsRemainderToLastColumn() {
+        TableAdapter adapter = new TableAdapter(mActivity, 70, 7,
+                ViewGroup.LayoutParams.MATCH_PARENT);
+        adapter.columnWeights = new float[]{1, 1, 1, 1, 1, 1, 1};
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        // 720 / 7 is 102 with 6 left over, which goes to the last column.
+        assertThat(mLayoutManager.findViewByPosition(1)).hasLeft(0).hasRight(102);
+        assertThat(mLayoutManager.findViewByPosition(6)).hasLeft(510).hasRight(612);
+        assertThat(mLayoutManager.findViewByPosition(7)).hasLeft(612).hasRight(720);
+        assertThat(mLayoutManager.findViewByPosition(8)).hasLeft(0).hasTop(2 * ROW_HEIGHT);
+    }
+
+    @Test
+    public void test_rtlColumnsFromRight() {
+        mLayoutManager = new LayoutManagerWrapper(mActivity) {
+            @Override
+            public int getLayoutDirection() {
+                return ViewCompat.LAYOUT_DIRECTION_RTL;
+            }
+        };
+        Utils.setupLayoutTest(null, new TableAdapter(mActivity, 30, 3, 100, 200, 100),
+                mLayoutManager, mRecyclerView);
+
+        // Columns are 180, 360 and 180 wide from the right edge, cells keep their own width.
+        assertThat(mLayoutManager.findViewByPosition(1)).hasLeft(620).hasRight(720);
+        assertThat(mLayoutManager.findViewByPosition(2)).hasLeft(340).hasRight(540);
+        assertThat(mLayoutManager.findViewByPosition(3)).hasLeft(80).hasRight(180);
+    }
+
+    @Test
+    public void test_sampleRowsLimitColumnWidths() {
+        // The second row is wider in the first column, but only the first row is sampled.
+        TableAdapter adapter = new TableAdapter(mActivity, 40, 2, 100, 100, 300, 100);
+        adapter.sampleRows = 1;
+        Utils.setupLayoutTest(null, adapter, mLayoutManager, mRecyclerView);
+
+        assertThat(mLayoutManager.findViewByPosition(2)).hasLeft(360);
+        assertThat(mLayoutManager.findViewByPosition(3)).hasLeft(0).hasRight(300);
+    }
+
+    @Test
+    public void test_sampledColumnWidths() {
+        Utils.setupLayoutTest(null, new TableAdapter(mActivity, 40, 2, 100, 100, 300, 100),
+                mLayoutManager, mRecyclerView);
+
+        // The widest cells, 300 and 100, split the width three to one.
+        assertThat(mLayoutManager.findViewByPosition(2)).hasLeft(540).hasRight(640);
+        assertThat(mLayoutManager.findViewByPosition(4)).hasLeft(540);
+    }
+
+    @Test
+    public void test_sampledWidthsRestored() {
+        Utils.setupLayoutTest(null, new TableAdapter(mActivity, 30, 3, 100, 200, 100),
+                mLayoutManager, mRecyclerView);
+        assertThat(mLayoutManager.findViewByPosition(2)).hasLeft(180);
+        Parcelable state = mLayoutManager.onSaveInstanceState();
+
+        // Cells that would now sample to equal widths.
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+        mLayoutManager.onRestoreInstanceState(state);
+        Utils.setupLayoutTest(null, new TableAdapter(mActivity, 30, 3, 100),
+                mLayoutManager, mRecyclerView);
+
+        // The restored widths are used rather than sampling the cells again.
+        assertThat(mLayoutManager.findViewByPosition(2)).hasLeft(180).hasRight(280);
+        assertThat(mLayoutManager.findViewByPosition(3)).hasLeft(540);
+    }
+
+    private void relayout() {
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+    }
+
+    /**
+     * A single table section with a header. Cells have fixed widths, repeating the given pattern.
+     */
+    private static class TableAdapter extends SectionedAdapter<RecyclerView.ViewHolder> {
+
+        final int[] cellWidths;
+
+        float[] columnWeights;
+
+        int sampleRows;
+
+        private final Context mContext;
+
+        private final int mItemCount;
+
+        private final int mNumColumns;
+
+        TableAdapter(Context context, int itemCount, int numColumns, int... cellWidths) {
+            mContext = context;
+            mItemCount = itemCount;
+            mNumColumns = numColumns;
+            this.cellWidths = cellWidths;
+        }
+
+        @Override
+        public int getSectionCount() {
+            return 1;
+        }
+
+        @Override
+        public int getSectionItemCount(int section) {
+            return mItemCount;
+        }
+
+        @Override
+        public boolean hasSectionHeader(int section) {
+            return true;
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new CountingView(mContext);
+            view.setLayoutParams(new TableSLM.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(RecyclerView.ViewHolder holder, int section) {
+            TableSLM.LayoutParams params =
+                    (TableSLM.LayoutParams) holder.itemView.getLayoutParams();
+            params.setSlm(TableSLM.ID);
+            params.setNumColumns(mNumColumns);
+            params.setColumnWeights(columnWeights);
+            params.setSampleRows(sampleRows);
+            params.headerDisplay = LayoutManager.LayoutParams.HEADER_INLINE;
+            params.width = ViewGroup.LayoutParams.MATCH_PARENT;
+            holder.itemView.setMinimumHeight(ROW_HEIGHT);
+        }
+
+        @Override
+        public void onBindItemViewHolder(RecyclerView.ViewHolder holder, int section, int index) {
+            TableSLM.LayoutParams params =
+                    (TableSLM.LayoutParams) holder.itemView.getLayoutParams();
+            params.setSlm(TableSLM.ID);
+            params.width = cellWidths[index % cellWidths.length];
+            holder.itemView.setMinimumHeight(ROW_HEIGHT);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.tonicartos.superslim;
+
+import com.tonicartos.superslim.util.Utils;
+import com.tonicartos.superslim.util.Utils.LayoutManagerWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import android.app.Activity;
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static org.assertj.android.api.Assertions.assertThat;
+
+/**
+ * End-to-end tests for a Layout Manager and TimelineSLM combination.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TimelineLayoutTests {
+
+    private static final String TIMELINE = "timeline";
+
+    private static final int HEADER_HEIGHT = 100;
+
+    private Activity mActivity;
+
+    private RecyclerView mRecyclerView;
+
+    private LayoutManagerWrapper mLayoutManager;
+
+    private TimelineAdapter mAdapter;
+
+    private TimelineSLM mTimelineSlm;
+
+    @Before
+    public void setup() {
+        ShadowLog.stream = System.out;
+        mActivity = Robolectric.buildActivity(Activity.class).create().get();
+        mRecyclerView = new RecyclerView(mActivity);
+        mLayoutManager = new LayoutManagerWrapper(mActivity);
+        mAdapter = new TimelineAdapter(mActivity);
+        mTimelineSlm = new TimelineSLM(mLayoutManager, mAdapter, 2f);
+        mLayoutManager.addSlm(TIMELINE, mTimelineSlm);
+    }
+
+    @Test
+    public void test_itemsPlacedByKeys() {
+        Utils.setupLayoutTest(null, mAdapter, mLayoutManager, mRecyclerView);
+
+        // Empty time at the start of a section is kept below the header.
+        assertThat(mLayoutManager.findViewByPosition(1)).hasTop(140).hasBottom(300);
+        assertThat(mLayoutManager.findViewByPosition(2)).hasTop(300).hasBottom(600);
+        assertThat(mLayoutManager.findViewByPosition(3)).hasTop(700).hasBottom(900);
+        assertThat(mLayoutManager.findViewByPosition(4)).hasTop(900).hasBottom(1000);
+        assertThat(mLayoutManager.findViewByPosition(5)).hasTop(1100).hasBottom(1300);
+    }
+
+    @Test
+    public void test_itemsPastEndNotBound() {
+        Utils.setupLayoutTest(null, mAdapter, mLayoutManager, mRecyclerView);
+
+        // The next item starts past the end edge, which is known from its keys alone.
+        assertNull(mLayoutManager.findViewByPosition(6));
+        assertFalse(mAdapter.boundPositions.contains(6));
+    }
+
+    @Test
+    public void test_relayoutFromFirstItemKeepsPlace() {
+        Utils.setupLayoutTest(null, mAdapter, mLayoutManager, mRecyclerView);
+        mRecyclerView.scrollBy(0, 150);
+        assertThat(mLayoutManager.findViewByPosition(1)).hasTop(-10);
+
+        // Laying out again from the first item must not move it to the top of the content.
+        for (int i = 0; i < 3; i++) {
+            mTimelineSlm.setPixelsPerKey(2f);
+            mRecyclerView.measure(0, 0);
+            mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+        }
+        assertThat(mLayoutManager.findViewByPosition(1)).hasTop(-10).hasBottom(150);
+        assertThat(mLayoutManager.findViewByPosition(2)).hasTop(150);
+    }
+
+    @Test
+    public void test_zoom() {
+        Utils.setupLayoutTest(null, mAdapter, mLayoutManager, mRecyclerView);
+
+        mTimelineSlm.setPixelsPerKey(1f);
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, Utils.RV_WIDTH, Utils.RV_HEIGHT);
+
+        assertThat(mLayoutManager.findViewByPosition(1)).hasTop(120).hasBottom(200);
+        assertThat(mLayoutManager.findViewByPosition(4)).hasTop(500);
+    }
+
+    @Test
+    public void test_scrollConsistency() {
+        Utils.doScrollConsistencyTest(25, 1000, null, mAdapter, mLayoutManager, mRecyclerView);
+    }
+
+    /**
+     * Sections with headers, laid out on a timeline. Keys are minutes within the section.
+     */
+    private static class TimelineAdapter extends SectionedAdapter<RecyclerView.ViewHolder>
+            implements TimelineSLM.Timeline {
+
+        private static final long[] SECTION_END_KEYS = {400, 500, 300, 600};
+
+        /**
+         * Start and end keys of the items in each section.
+         */
+        private static final long[][][] ITEM_KEYS = {
+                {{20, 100}, {100, 250}, {300, 400}},
+                {{50, 150}, {150, 300}, {300, 500}},
+                {{0, 100}, {100, 200}, {250, 300}},
+                {{30, 60}, {60, 300}, {400, 420}, {500, 600}},
+        };
+
+        final List<Integer> boundPositions = new ArrayList<>();
+
+        private final Context mContext;
+
+        TimelineAdapter(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public int getSectionCount() {
+            return ITEM_KEYS.length;
+        }
+
+        @Override
+        public int getSectionItemCount(int section) {
+            return ITEM_KEYS[section].length;
+        }
+
+        @Override
+        public boolean hasSectionHeader(int section) {
+            return true;
+        }
+
+        @Override
+        public long getSectionStartKey(int sectionFirstPosition) {
+            return 0;
+        }
+
+        @Override
+        public long getSectionEndKey(int sectionFirstPosition) {
+            return SECTION_END_KEYS[getSectionForPosition(sectionFirstPosition)];
+        }
+
+        @Override
+        public long getItemStartKey(int position) {
+            return getItemKeys(position)[0];
+        }
+
+        @Override
+        public long getItemEndKey(int position) {
+            return getItemKeys(position)[1];
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            View view = new View(mContext);
+            view.setLayoutParams(new LayoutManager.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindHeaderViewHolder(RecyclerView.ViewHolder holder, int section) {
+            LayoutManager.LayoutParams params =
+                    (LayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+            params.headerDisplay = LayoutManager.LayoutParams.HEADER_INLINE;
+            params.setSlm(TIMELINE);
+            holder.itemView.setMinimumHeight(HEADER_HEIGHT);
+        }
+
+        @Override
+        public void onBindItemViewHolder(RecyclerView.ViewHolder holder, int section, int index) {
+            LayoutManager.LayoutParams params =
+                    (LayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+            params.setSlm(TIMELINE);
+            holder.itemView.setMinimumHeight(0);
+            boundPositions.add(getFirstPosition(section) + 1 + index);
+        }
+
+        private long[] getItemKeys(int position) {
+            final int section = getSectionForPosition(position);
+            return ITEM_KEYS[section][position - getFirstPosition(section) - 1];
+        }
+    }
+}
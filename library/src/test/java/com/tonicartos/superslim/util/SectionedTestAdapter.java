@@ -0,0 +1,175 @@
+package com.tonicartos.superslim.util;
+
+import com.tonicartos.superslim.GridSLM;
+import com.tonicartos.superslim.LayoutManager;
+import com.tonicartos.superslim.LinearSLM;
+import com.tonicartos.superslim.SectionedAdapter;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sectioned adapter of fixed height views with stable ids. Binds are recorded so tests can check
+ * which positions were bound, and how.
+ */
+public class SectionedTestAdapter extends SectionedAdapter<RecyclerView.ViewHolder> {
+
+    public final List<Integer> boundPositions = new ArrayList<>();
+
+    public final List<Integer> lightlyBoundPositions = new ArrayList<>();
+
+    private final Context mContext;
+
+    private final List<Section> mSections = new ArrayList<>();
+
+    private long mNextId = 0;
+
+    public SectionedTestAdapter(Context context) {
+        mContext = context;
+        setHasStableIds(true);
+    }
+
+    public SectionedTestAdapter addSection(int itemCount, int itemHeight, int headerDisplay) {
+        return addSection(itemCount, itemHeight, headerDisplay, LinearSLM.ID, 0);
+    }
+
+    /**
+     * @param itemCount     Number of content items.
+     * @param itemHeight    Height of headers and items.
+     * @param headerDisplay Header display flags, or -1 for no header.
+     * @param slm           Section layout manager kind.
+     * @param depth         Nesting depth of the section.
+     * @return This adapter.
+     */
+    public SectionedTestAdapter addSection(int itemCount, int itemHeight, int headerDisplay,
+            int slm, int depth) {
+        Section section = new Section(itemHeight, headerDisplay, slm, depth, mNextId++);
+        for (int i = 0; i < itemCount; i++) {
+            section.itemIds.add(mNextId++);
+        }
+        mSections.add(section);
+        return this;
+    }
+
+    /**
+     * Add items to a section without notifying.
+     */
+    public void addItems(int section, int index, int count) {
+        for (int i = 0; i < count; i++) {
+            mSections.get(section).itemIds.add(index + i, mNextId++);
+        }
+    }
+
+    public void clearBinds() {
+        boundPositions.clear();
+        lightlyBoundPositions.clear();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        final int section = getSectionForPosition(position);
+        final int index = getIndexInSection(position);
+        return index == -1 ? mSections.get(section).headerId
+                : mSections.get(section).itemIds.get(index);
+    }
+
+    @Override
+    public int getSectionCount() {
+        return mSections.size();
+    }
+
+    @Override
+    public int getSectionDepth(int section) {
+        return mSections.get(section).depth;
+    }
+
+    @Override
+    public int getSectionItemCount(int section) {
+        return mSections.get(section).itemIds.size();
+    }
+
+    @Override
+    public boolean hasSectionHeader(int section) {
+        return mSections.get(section).headerDisplay != -1;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = new CountingView(mContext);
+        view.setLayoutParams(new GridSLM.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        return new RecyclerView.ViewHolder(view) {
+        };
+    }
+
+    @Override
+    public void onBindHeaderViewHolder(RecyclerView.ViewHolder holder, int section) {
+        LayoutManager.LayoutParams params =
+                (LayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+        params.headerDisplay = mSections.get(section).headerDisplay;
+        bind(holder, section, getFirstPosition(section));
+    }
+
+    @Override
+    public void onBindItemViewHolder(RecyclerView.ViewHolder holder, int section, int index) {
+        bind(holder, section,
+                getFirstPosition(section) + (hasSectionHeader(section) ? 1 : 0) + index);
+    }
+
+    private void bind(RecyclerView.ViewHolder holder, int section, int position) {
+        LayoutManager.LayoutParams params =
+                (LayoutManager.LayoutParams) holder.itemView.getLayoutParams();
+        params.setSlm(mSections.get(section).slm);
+        holder.itemView.setMinimumHeight(mSections.get(section).itemHeight);
+        boundPositions.add(position);
+        if (isLightweightBind()) {
+            lightlyBoundPositions.add(position);
+        }
+    }
+
+    /**
+     * View that counts how many times it is measured.
+     */
+    public static class CountingView extends View {
+
+        public int measureCount;
+
+        public CountingView(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            measureCount += 1;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+
+    private static class Section {
+
+        final int itemHeight;
+
+        final int headerDisplay;
+
+        final int slm;
+
+        final int depth;
+
+        final long headerId;
+
+        final List<Long> itemIds = new ArrayList<>();
+
+        Section(int itemHeight, int headerDisplay, int slm, int depth, long headerId) {
+            this.itemHeight = itemHeight;
+            this.headerDisplay = headerDisplay;
+            this.slm = slm;
+            this.depth = depth;
+            this.headerId = headerId;
+        }
+    }
+}
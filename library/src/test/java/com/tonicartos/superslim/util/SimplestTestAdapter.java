@@ -82,6 +82,24 @@ public class SimplestTestAdapter extends RecyclerView.Adapter<SimplestTestAdapte
         }
     }
 
+    public static class FooterItem extends Item {
+
+        public int flags;
+
+        public FooterItem(int flags) {
+            this.flags = flags;
+        }
+
+        @Override
+        public void configureView(View v) {
+            super.configureView(v);
+            LayoutManager.LayoutParams params = (LayoutManager.LayoutParams) v.getLayoutParams();
+            params.footerDisplay = flags;
+            params.isFooter = true;
+            v.setLayoutParams(params);
+        }
+    }
+
     public static class TestViewHolder extends RecyclerView.ViewHolder {
 
         private final List<Item> mItems;
@@ -36,9 +36,23 @@ public class TestAdapterBuilder {
         return addSection(itemCount, itemWidth, itemHeight, header, params);
     }
 
+    public TestAdapterBuilder addLinearSection(int itemCount, int itemWidth, int itemHeight,
+            Header header, Footer footer) {
+        LayoutManager.LayoutParams params = new LayoutManager.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+        params.setSlm(LinearSLM.ID);
+        return addSection(itemCount, itemWidth, itemHeight, header, footer, params);
+    }
+
     public TestAdapterBuilder addSection(int itemCount, int itemWidth, int itemHeight,
             Header header, LayoutManager.LayoutParams params) {
-        mSections.add(new Section(itemCount, itemWidth, itemHeight, header, params));
+        return addSection(itemCount, itemWidth, itemHeight, header, null, params);
+    }
+
+    public TestAdapterBuilder addSection(int itemCount, int itemWidth, int itemHeight,
+            Header header, Footer footer, LayoutManager.LayoutParams params) {
+        mSections.add(new Section(itemCount, itemWidth, itemHeight, header, footer, params));
         return this;
     }
 
@@ -50,13 +64,16 @@ public class TestAdapterBuilder {
                 SimplestTestAdapter.Item item;
                 if (i == 0 && section.header != null) {
                     item = new SimplestTestAdapter.HeaderItem(section.header.flags);
+                } else if (i == section.itemCount - 1 && section.footer != null) {
+                    item = new SimplestTestAdapter.FooterItem(section.footer.flags);
                 } else {
                     item = new SimplestTestAdapter.Item();
                 }
                 item.referenceParams = section.params;
                 item.sectionStart = sectionStart;
                 item.width = section.itemWidth;
-                item.height = section.itemHeight;
+                item.height = item instanceof SimplestTestAdapter.FooterItem ?
+                        section.footer.height : section.itemHeight;
                 adapter.addItem(item);
             }
             sectionStart += section.itemCount;
@@ -105,6 +122,26 @@ public class TestAdapterBuilder {
         }
     }
 
+    public static class Footer {
+
+        public final int flags;
+
+        public final int height;
+
+        private Footer(int flags, int height) {
+            this.flags = flags;
+            this.height = height;
+        }
+
+        public static Footer inline(int height) {
+            return new Footer(LayoutManager.LayoutParams.FOOTER_INLINE, height);
+        }
+
+        public static Footer sticky(int height) {
+            return new Footer(LayoutManager.LayoutParams.FOOTER_STICKY, height);
+        }
+    }
+
     private static class Section {
 
         public final int itemCount;
@@ -113,16 +150,19 @@ public class TestAdapterBuilder {
 
         public final Header header;
 
+        public final Footer footer;
+
         public int itemWidth;
 
         public LayoutManager.LayoutParams params;
 
         public Section(int itemCount, int itemWidth, int itemHeight, Header hasHeader,
-                LayoutManager.LayoutParams params) {
+                Footer footer, LayoutManager.LayoutParams params) {
             this.itemCount = itemCount;
             this.itemWidth = itemWidth;
             this.itemHeight = itemHeight;
             this.header = hasHeader;
+            this.footer = footer;
             this.params = params;
         }
     }
@@ -1,22 +1,16 @@
 package com.tonicartos.superslim.util;
 
-import com.tonicartos.superslim.LayoutManager;
-import com.tonicartos.superslim.LayoutState;
-
 import android.content.Context;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.View;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
 import static org.assertj.android.api.Assertions.assertThat;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 /**
  *
@@ -83,34 +77,49 @@ public class Utils {
     }
 
     /**
-     * Perform an overscroll test.
+     * Perform an overscroll test. The children are shifted and laid out again, which corrects
+     * any gap left at the start or end edge.
      *
      * @param offset         Offset to apply to simulate overscroll; dx, dy.
      * @param padding        Padding values; l, t, r, b.
-     * @param expected       Expected bounds; l, t, r, b.
+     * @param expected       Whether the offset leaves a gap to correct.
      * @param adapter        Adapter to use.
      * @param mLayoutManager Layout manager to use.
      * @param mRecyclerView  RecyclerView to use.
      */
     public static void doOverscrollTest(int[] offset, int[] padding, boolean expected,
             RecyclerView.Adapter adapter, LayoutManagerWrapper mLayoutManager,
-            RecyclerView mRecyclerView)
-            throws Exception {
+            RecyclerView mRecyclerView) {
         setupLayoutTest(padding, adapter, mLayoutManager, mRecyclerView);
         // Shift so that bounds are after start and end.
         adjustPosition(mRecyclerView, offset[0], offset[1]);
+        final int shiftedTop = mLayoutManager.getDecoratedTop(mLayoutManager.getChildAt(0));
 
-        Method isOverscrolled =
-                LayoutManager.class.getDeclaredMethod("isOverscrolled", LayoutState.class);
-        isOverscrolled.setAccessible(true);
+        mRecyclerView.requestLayout();
+        mRecyclerView.measure(0, 0);
+        mRecyclerView.layout(0, 0, RV_WIDTH, RV_HEIGHT);
 
-        LayoutState state = mock(LayoutState.class);
-        RecyclerView.State mRecyclerViewState = mock(RecyclerView.State.class);
-        when(state.getRecyclerState()).thenReturn(mRecyclerViewState);
-        when(mRecyclerViewState.getItemCount()).thenReturn(adapter.getItemCount());
+        final int topEdge = mRecyclerView.getPaddingTop();
+        final int bottomEdge = RV_HEIGHT - mRecyclerView.getPaddingBottom();
+        if (!expected) {
+            // Nothing to correct, so the layout starts where the children were.
+            assertEquals(shiftedTop,
+                    mLayoutManager.getDecoratedTop(mLayoutManager.getChildAt(0)));
+            return;
+        }
 
-        boolean result = (Boolean) isOverscrolled.invoke(mLayoutManager, state);
-        assertEquals(expected, result);
+        // Either the first item is at the start edge, or the last is at the end edge with the
+        // first item no lower than the start edge.
+        View first = mLayoutManager.findViewByPosition(0);
+        View last = mLayoutManager.findViewByPosition(adapter.getItemCount() - 1);
+        final boolean startPinned = first != null
+                && mLayoutManager.getDecoratedTop(first) == topEdge;
+        final boolean endPinned = last != null
+                && mLayoutManager.getDecoratedBottom(last) == bottomEdge;
+        assertTrue(startPinned || endPinned);
+        if (first != null) {
+            assertTrue(mLayoutManager.getDecoratedTop(first) <= topEdge);
+        }
     }
 
     /**